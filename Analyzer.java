@@ -4,7 +4,11 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -13,18 +17,146 @@ import java.util.stream.Collectors;
  */
 public final class Analyzer implements Ast.Visitor<Void> {
 
+    /**
+     * The JVM name of the builtin {@code range}, which no method can share.
+     */
+    public static final String RANGE = "java.util.stream.IntStream.range";
+
     public Scope scope;
     private Ast.Method method;
 
+    /**
+     * The variables of the fields and the functions of the methods found to
+     * be pure so far, for {@link Purity}.
+     */
+    private final Set<Environment.Variable> fields = new HashSet<>();
+    private final Set<Environment.Function> pure = new HashSet<>();
+
+    /**
+     * The functions of the methods found to be isolated so far, which are
+     * the only ones {@code SPAWN} may call, and whether the method being
+     * analyzed spawns itself, which it may only do if it turns out isolated.
+     */
+    private final Set<Environment.Function> isolated = new HashSet<>();
+    private boolean spawnsItself = false;
+
+    /**
+     * How Decimals are computed, which decides which literals are allowed and
+     * whether dividing them may fail.
+     */
+    private Arithmetic arithmetic = Arithmetic.DEFAULT;
+
     public Analyzer(Scope parent) {
         scope = new Scope(parent);
         scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        scope.defineFunction("range", RANGE, Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+        scope.defineFunction("range", RANGE, Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+    }
+
+    /**
+     * Returns whether the expression is a call to the builtin {@code range},
+     * which the generators compile to a counted loop.
+     */
+    public static boolean isRange(Ast.Expr expression) {
+        return expression instanceof Ast.Expr.Function
+                && !((Ast.Expr.Function) expression).getReceiver().isPresent()
+                && ((Ast.Expr.Function) expression).getFunction().getJvmName().equals(RANGE);
+    }
+
+    /**
+     * Returns whether the expression is a call to the builtin {@code print}.
+     */
+    public static boolean isPrint(Ast.Expr expression) {
+        return expression instanceof Ast.Expr.Function
+                && !((Ast.Expr.Function) expression).getReceiver().isPresent()
+                && ((Ast.Expr.Function) expression).getFunction().getJvmName().equals("System.out.println");
+    }
+
+    /**
+     * Returns whether evaluating an analyzed expression may fail: by dividing
+     * Integers by anything but a nonzero literal, by dividing Decimals where
+     * the arithmetic may fail (see {@link Arithmetic#divisionMayFail}), or by
+     * a range whose step is anything but a nonzero literal.
+     */
+    boolean mayFail(Ast.Expr expression) {
+        if(expression instanceof Ast.Expr.Group) {
+            return mayFail(((Ast.Expr.Group) expression).getExpression());
+        }
+        else if(expression instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) expression;
+            if(binary.getOperator().equals("/") && (binary.getType() == Environment.Type.DECIMAL
+                    ? arithmetic.divisionMayFail(isNonzero(binary.getRight())) : !isNonzero(binary.getRight()))) {
+                return true;
+            }
+            return mayFail(binary.getLeft()) || mayFail(binary.getRight());
+        }
+        else if(expression instanceof Ast.Expr.Access) {
+            return ((Ast.Expr.Access) expression).getReceiver().map(this::mayFail).orElse(false);
+        }
+        else if(expression instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expression;
+            if(isRange(function) && function.getArguments().size() == 3 && !isNonzero(function.getArguments().get(2))) {
+                return true;
+            }
+            for(Ast.Expr argument : function.getArguments()) {
+                if(mayFail(argument)) {
+                    return true;
+                }
+            }
+            return function.getReceiver().map(this::mayFail).orElse(false);
+        }
+        else if(expression instanceof Ast.Expr.Spawn || expression instanceof Ast.Expr.Await) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the variables the statements assign, other than those of objects'
+     * fields, to the set.
+     */
+    private static void assignments(List<Ast.Stmt> statements, Set<Environment.Variable> assigned) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Assignment) {
+                Ast.Expr receiver = ((Ast.Stmt.Assignment) statement).getReceiver();
+                if(receiver instanceof Ast.Expr.Access && !((Ast.Expr.Access) receiver).getReceiver().isPresent()) {
+                    assigned.add(((Ast.Expr.Access) receiver).getVariable());
+                }
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                assignments(((Ast.Stmt.If) statement).getThenStatements(), assigned);
+                assignments(((Ast.Stmt.If) statement).getElseStatements(), assigned);
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                assignments(((Ast.Stmt.For) statement).getStatements(), assigned);
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                assignments(((Ast.Stmt.While) statement).getStatements(), assigned);
+            }
+        }
+    }
+
+    private static boolean isNonzero(Ast.Expr expression) {
+        if(!(expression instanceof Ast.Expr.Literal)) {
+            return false;
+        }
+        Object literal = ((Ast.Expr.Literal) expression).getLiteral();
+        return literal instanceof BigInteger && ((BigInteger) literal).signum() != 0
+                || literal instanceof BigDecimal && ((BigDecimal) literal).signum() != 0;
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    /**
+     * Analyzes sources from now on for the given arithmetic, which the
+     * engines running them should then use too.
+     */
+    public void setArithmetic(Arithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
         for(int i = 0; i < ast.getFields().size(); i++) {
@@ -38,6 +170,18 @@ public final class Analyzer implements Ast.Visitor<Void> {
             throw new RuntimeException();
         }
 
+        // An initializer which has no effect, cannot fail, and only reads
+        // fields which keep their initial values may run whenever the field is
+        // first read, as nothing can tell when it did.
+        Set<Environment.Variable> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Ast.Method method : ast.getMethods()) {
+            assignments(method.getStatements(), assigned);
+        }
+        for(Ast.Field field : ast.getFields()) {
+            field.setLazy(field.getValue().isPresent() && new Purity(assigned, pure).visit(field.getValue().get())
+                    && !mayFail(field.getValue().get()));
+        }
+
         return null;
     }
 
@@ -48,12 +192,14 @@ public final class Analyzer implements Ast.Visitor<Void> {
             requireAssignable(ast.getValue().get().getType(), Environment.getType(ast.getTypeName()));
         }
         ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName()), Environment.NIL));
+        fields.add(ast.getVariable());
 
         return null;
     }
 
     @Override
     public Void visit(Ast.Method ast) {
+        method = ast;
         List<Environment.Type> parameterTypes = new ArrayList<>();
 
         if(!ast.getParameters().isEmpty()) {
@@ -85,12 +231,25 @@ public final class Analyzer implements Ast.Visitor<Void> {
             scope = scope.getParent();
         }
 
+        ast.setPure(new Purity(fields, pure).visit(ast));
+        if(ast.isPure()) {
+            pure.add(function);
+        }
+        if(new Purity(fields, isolated, true).visit(ast)) {
+            isolated.add(function);
+        }
+        else if(spawnsItself) {
+            throw new RuntimeException("The method " + ast.getName() + " cannot be spawned, as it accesses fields or calls methods which do.");
+        }
+        spawnsItself = false;
+
         return null;
     }
 
     @Override
     public Void visit(Ast.Stmt.Expression ast) {
-        if(!(ast.getExpression() instanceof Ast.Expr.Function)) {
+        if(!(ast.getExpression() instanceof Ast.Expr.Function || ast.getExpression() instanceof Ast.Expr.Spawn
+                || ast.getExpression() instanceof Ast.Expr.Await)) {
             throw new RuntimeException();
         }
 
@@ -184,6 +343,10 @@ public final class Analyzer implements Ast.Visitor<Void> {
             throw new RuntimeException();
         }
         try{
+            // The loop variable gets a scope of its own, outside the body's,
+            // so that the body may assign it.
+            scope = new Scope(scope);
+            scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
             scope = new Scope(scope);
 
             for(Ast.Stmt stmt : ast.getStatements()){
@@ -191,8 +354,9 @@ public final class Analyzer implements Ast.Visitor<Void> {
             }
         }
         finally{
-            scope = scope.getParent();
+            scope = scope.getParent().getParent();
         }
+        ast.setReductions(Dependence.analyze(ast, pure));
 
         return null;
     }
@@ -248,9 +412,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
             }
         }
         else if(ast.getLiteral() instanceof BigDecimal) {
-            double checkVal = ((BigDecimal)ast.getLiteral()).doubleValue();
-            if(checkVal == Double.POSITIVE_INFINITY || checkVal == Double.NEGATIVE_INFINITY) {
-                throw new RuntimeException();
+            if(!arithmetic.represents((BigDecimal) ast.getLiteral())) {
+                throw new RuntimeException("The Decimal " + ast.getLiteral() + " cannot be represented by the " + arithmetic + " arithmetic.");
             }
             else {
                 ast.setType(Environment.Type.DECIMAL);
@@ -407,6 +570,38 @@ public final class Analyzer implements Ast.Visitor<Void> {
         return null; //TODO
     }
 
+    /**
+     * A spawned call runs concurrently with its spawner and other tasks, so
+     * to keep fields free of races it must be to an isolated method (see
+     * {@link Purity}), which never reads or writes them.
+     */
+    @Override
+    public Void visit(Ast.Expr.Spawn ast) {
+        visit(ast.getCall());
+        Environment.Function function = ast.getCall().getFunction();
+        if(function == method.getFunction()) {
+            spawnsItself = true;
+        }
+        else if(!isolated.contains(function)) {
+            throw new RuntimeException("The method " + ast.getCall().getName() + " cannot be spawned, as it accesses fields or calls methods which do.");
+        }
+        ast.setType(Environment.Type.handleOf(function.getReturnType()));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Await ast) {
+        visit(ast.getValue());
+        Environment.Type result = ast.getValue().getType().getResultType();
+        if(result == null) {
+            throw new RuntimeException("Expected a handle to await.");
+        }
+        ast.setType(result);
+
+        return null;
+    }
+
     public static void requireAssignable(Environment.Type target, Environment.Type type) {
         if(target == Environment.Type.ANY){
             return;
@@ -0,0 +1,166 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * How Decimals are represented and computed. The {@link Analyzer},
+ * {@link Interpreter} and {@link Generator} each take one, and given the same
+ * one they agree on what a program prints.
+ *
+ * By {@link #DEFAULT}, Decimals are BigDecimals which are added, subtracted
+ * and multiplied exactly and divided to one decimal place, rounding half to
+ * even. An arithmetic made by {@link #exact(MathContext)} rounds every
+ * operation to the context instead; with {@link MathContext#UNLIMITED} it
+ * never rounds, and so fails dividing into a nonterminating expansion such as
+ * one third. With {@link #DOUBLE}, Decimals are IEEE 754 doubles, which is
+ * much faster and how the Generator has always compiled them, but is
+ * inexact.
+ *
+ * Decimal literals are parsed as BigDecimals and converted by
+ * {@link #decimal(BigDecimal)}, so with {@link #DOUBLE} the value of every
+ * Decimal at runtime is a Double.
+ */
+public final class Arithmetic {
+
+    public static final Arithmetic DEFAULT = new Arithmetic("default", null);
+    public static final Arithmetic DOUBLE = new Arithmetic("double", null);
+
+    private final String name;
+    private final MathContext context;
+
+    private Arithmetic(String name, MathContext context) {
+        this.name = name;
+        this.context = context;
+    }
+
+    /**
+     * Returns the arithmetic on BigDecimals rounding each operation to the
+     * context.
+     */
+    public static Arithmetic exact(MathContext context) {
+        String name;
+        if (context.equals(MathContext.DECIMAL32)) {
+            name = "decimal32";
+        } else if (context.equals(MathContext.DECIMAL64)) {
+            name = "decimal64";
+        } else if (context.equals(MathContext.DECIMAL128)) {
+            name = "decimal128";
+        } else if (context.equals(MathContext.UNLIMITED)) {
+            name = "unlimited";
+        } else if (context.getRoundingMode() == RoundingMode.HALF_EVEN) {
+            name = String.valueOf(context.getPrecision());
+        } else {
+            name = context.toString();
+        }
+        return new Arithmetic(name, context);
+    }
+
+    /**
+     * Returns the arithmetic with the given name: "default", "double",
+     * "decimal32", "decimal64", "decimal128", "unlimited", or a number of
+     * digits to round to, half to even.
+     */
+    public static Arithmetic valueOf(String name) {
+        switch (name) {
+            case "default":
+                return DEFAULT;
+            case "double":
+                return DOUBLE;
+            case "decimal32":
+                return exact(MathContext.DECIMAL32);
+            case "decimal64":
+                return exact(MathContext.DECIMAL64);
+            case "decimal128":
+                return exact(MathContext.DECIMAL128);
+            case "unlimited":
+                return exact(MathContext.UNLIMITED);
+        }
+        try {
+            return exact(new MathContext(Integer.parseInt(name)));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown Decimal arithmetic " + name + ".");
+        }
+    }
+
+    public boolean isDouble() {
+        return this == DOUBLE;
+    }
+
+    /**
+     * Returns the context every operation is rounded to, or {@code null} for
+     * {@link #DEFAULT} and {@link #DOUBLE}.
+     */
+    public MathContext getContext() {
+        return context;
+    }
+
+    /**
+     * Returns whether sums and products of Decimals are exact, and so do not
+     * depend on the order they are computed in, as parallel reductions
+     * require.
+     */
+    public boolean isAssociative() {
+        return this == DEFAULT || context != null && context.getPrecision() == 0;
+    }
+
+    /**
+     * Returns whether a Decimal literal keeps its value, which the
+     * {@link Analyzer} requires of every literal. Doubles (and, for the sake
+     * of the Generator, the default arithmetic) must not overflow, while a
+     * context must not round the literal.
+     */
+    public boolean represents(BigDecimal literal) {
+        if (context != null) {
+            return literal.round(context).compareTo(literal) == 0;
+        }
+        return !Double.isInfinite(literal.doubleValue());
+    }
+
+    /**
+     * Returns whether dividing Decimals may fail, given whether the divisor
+     * is known to be nonzero. Doubles never fail, dividing by zero giving an
+     * infinity or NaN, while an unlimited context fails unless the quotient
+     * terminates.
+     */
+    public boolean divisionMayFail(boolean nonzero) {
+        if (this == DOUBLE) {
+            return false;
+        }
+        return context != null && context.getPrecision() == 0 || !nonzero;
+    }
+
+    /**
+     * Returns the runtime value of a Decimal literal.
+     */
+    public Object decimal(BigDecimal literal) {
+        return this == DOUBLE ? (Object) literal.doubleValue() : literal;
+    }
+
+    public BigDecimal add(BigDecimal left, BigDecimal right) {
+        return context == null ? left.add(right) : left.add(right, context);
+    }
+
+    public BigDecimal subtract(BigDecimal left, BigDecimal right) {
+        return context == null ? left.subtract(right) : left.subtract(right, context);
+    }
+
+    public BigDecimal multiply(BigDecimal left, BigDecimal right) {
+        return context == null ? left.multiply(right) : left.multiply(right, context);
+    }
+
+    public BigDecimal divide(BigDecimal left, BigDecimal right) {
+        return context == null ? left.divide(right, 1, RoundingMode.HALF_EVEN) : left.divide(right, context);
+    }
+
+    /**
+     * Returns the name of the arithmetic, as accepted by
+     * {@link #valueOf(String)}.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -2,6 +2,7 @@ package plc.project;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -11,6 +12,21 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    private int offset = -1;
+
+    /**
+     * Returns the offset in the source of the node's first token (its
+     * {@link Token#getIndex()}), or -1 if the node was not parsed from
+     * source. Only fields, methods and statements record their offsets.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Field> fields;
@@ -52,6 +68,7 @@ public abstract class Ast {
         private final String typeName;
         private final Optional<Expr> value;
         private Environment.Variable variable = null;
+        private boolean lazy = false;
 
         public Field(String name, Optional<Expr> value) {
             this(name, "Any", value);
@@ -86,6 +103,19 @@ public abstract class Ast {
             this.variable = variable;
         }
 
+        /**
+         * Returns whether the field's initializer may run on the first read
+         * of the field rather than at startup, which the {@link Analyzer}
+         * decides.
+         */
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        public void setLazy(boolean lazy) {
+            this.lazy = lazy;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Field &&
@@ -115,6 +145,7 @@ public abstract class Ast {
         private final Optional<String> returnTypeName;
         private final List<Stmt> statements;
         private Environment.Function function = null;
+        private boolean pure = false;
 
         public Method(String name, List<String> parameters, List<Stmt> statements) {
             this(name, parameters, new ArrayList<>(), Optional.of("Any"), statements);
@@ -162,6 +193,18 @@ public abstract class Ast {
             this.function = function;
         }
 
+        /**
+         * Returns whether the method was found to be pure by {@link Purity},
+         * which may only be the case once it has been analyzed.
+         */
+        public boolean isPure() {
+            return pure;
+        }
+
+        public void setPure(boolean pure) {
+            this.pure = pure;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Method &&
@@ -361,6 +404,7 @@ public abstract class Ast {
             private final String name;
             private final Expr value;
             private final List<Stmt> statements;
+            private Map<String, String> reductions = null;
 
             public For(String name, Expr value, List<Stmt> statements) {
                 this.name = name;
@@ -380,6 +424,30 @@ public abstract class Ast {
                 return statements;
             }
 
+            /**
+             * Returns whether the iterations of the loop were found to be
+             * independent by {@link Dependence}, so that they may run in
+             * parallel, which may only be the case once it has been analyzed.
+             */
+            public boolean isParallel() {
+                return reductions != null;
+            }
+
+            /**
+             * Returns the reductions of a parallel loop, each variable's name
+             * mapped to its operator.
+             */
+            public Map<String, String> getReductions() {
+                if (reductions == null) {
+                    throw new IllegalStateException("loop is not parallel");
+                }
+                return reductions;
+            }
+
+            public void setReductions(Map<String, String> reductions) {
+                this.reductions = reductions;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof For &&
@@ -668,6 +736,7 @@ public abstract class Ast {
             private final String name;
             private final List<Expr> arguments;
             private Environment.Function function = null;
+            private volatile CallCache cache = null;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
                 this.receiver = receiver;
@@ -698,6 +767,23 @@ public abstract class Ast {
                 this.function = function;
             }
 
+            /**
+             * Returns the function cached at this call site for the given
+             * scope (the globals or the scope of the receiver's type it was
+             * resolved in), or {@code null} if the cache is empty or stale.
+             */
+            public Environment.Function getCachedFunction(Scope scope) {
+                CallCache cache = this.cache;
+                if (cache != null && cache.scope == scope && cache.version == scope.getFunctionVersion()) {
+                    return cache.function;
+                }
+                return null;
+            }
+
+            public void setCachedFunction(Scope scope, int version, Environment.Function function) {
+                this.cache = new CallCache(scope, version, function);
+            }
+
             @Override
             public Environment.Type getType() {
                 return getFunction().getReturnType();
@@ -722,6 +808,116 @@ public abstract class Ast {
                         '}';
             }
 
+            /**
+             * Immutable inline cache entry, replaced as a whole so concurrent
+             * readers never observe a partially updated cache.
+             */
+            private static final class CallCache {
+
+                private final Scope scope;
+                private final int version;
+                private final Environment.Function function;
+
+                private CallCache(Scope scope, int version, Environment.Function function) {
+                    this.scope = scope;
+                    this.version = version;
+                    this.function = function;
+                }
+
+            }
+
+        }
+
+        /**
+         * A {@code SPAWN} of a call, which starts the call on another thread
+         * and evaluates to a handle for its result.
+         */
+        public static final class Spawn extends Expr {
+
+            private final Function call;
+            private Environment.Type type = null;
+
+            public Spawn(Function call) {
+                this.call = call;
+            }
+
+            public Function getCall() {
+                return call;
+            }
+
+            @Override
+            public Environment.Type getType() {
+                if (type == null) {
+                    throw new IllegalStateException("type is uninitialized");
+                }
+                return type;
+            }
+
+            public void setType(Environment.Type type) {
+                this.type = type;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Spawn &&
+                        call.equals(((Spawn) obj).call) &&
+                        Objects.equals(type, ((Spawn) obj).type);
+            }
+
+            @Override
+            public String toString() {
+                return "Ast.Expr.Spawn{" +
+                        "call=" + call +
+                        ", type=" + type +
+                        '}';
+            }
+
+        }
+
+        /**
+         * An {@code AWAIT} of a handle, which waits for the spawned call to
+         * finish and evaluates to its result.
+         */
+        public static final class Await extends Expr {
+
+            private final Expr value;
+            private Environment.Type type = null;
+
+            public Await(Expr value) {
+                this.value = value;
+            }
+
+            public Expr getValue() {
+                return value;
+            }
+
+            @Override
+            public Environment.Type getType() {
+                if (type == null) {
+                    throw new IllegalStateException("type is uninitialized");
+                }
+                return type;
+            }
+
+            public void setType(Environment.Type type) {
+                this.type = type;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Await &&
+                        value.equals(((Await) obj).value) &&
+                        Objects.equals(type, ((Await) obj).type);
+            }
+
+            @Override
+            public String toString() {
+                return "Ast.Expr.Await{" +
+                        "value=" + value +
+                        ", type=" + type +
+                        '}';
+            }
+
         }
 
     }
@@ -759,6 +955,10 @@ public abstract class Ast {
                 return visit((Expr.Access) ast);
             } else if (ast instanceof Expr.Function) {
                 return visit((Expr.Function) ast);
+            } else if (ast instanceof Expr.Spawn) {
+                return visit((Expr.Spawn) ast);
+            } else if (ast instanceof Expr.Await) {
+                return visit((Expr.Await) ast);
             } else {
                 throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
             }
@@ -794,6 +994,10 @@ public abstract class Ast {
 
         T visit(Expr.Function ast);
 
+        T visit(Expr.Spawn ast);
+
+        T visit(Expr.Await ast);
+
     }
 
 }
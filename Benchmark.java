@@ -0,0 +1,150 @@
+package plc.project;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small timing harness comparing the execution engines on loop-heavy
+ * programs. Each program is lexed, parsed and analyzed once, then run
+ * repeatedly by every engine; output from {@code print} is discarded while
+ * measuring. Pass program names as arguments to run a subset.
+ */
+public final class Benchmark {
+
+    private static final Map<String, Program> PROGRAMS = new LinkedHashMap<>();
+    private static final Map<String, Engine> ENGINES = new LinkedHashMap<>();
+
+    static {
+        PROGRAMS.put("readme", new Program(1, 3, String.join("\n",
+                "LET x: Integer = 0;",
+                "LET y: Integer = 2;",
+                "LET i: Integer;",
+                "DEF main(): Integer DO",
+                "    print(\"Hello, World!\");",
+                "    i = 0;",
+                "    WHILE i < 10000000 DO",
+                "        x = x + i;",
+                "        print(x * y);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END")));
+        PROGRAMS.put("loop", new Program(5, 10, String.join("\n",
+                "LET x: Integer = 0;",
+                "LET y: Integer = 2;",
+                "LET i: Integer;",
+                "DEF main(): Integer DO",
+                "    i = 0;",
+                "    WHILE i < 100000 DO",
+                "        x = x + i * y;",
+                "        i = i + 1;",
+                "    END",
+                "    print(x);",
+                "    RETURN 0;",
+                "END")));
+        PROGRAMS.put("locals", new Program(5, 10, String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    LET sum: Integer = 0;",
+                "    WHILE i < 100000 DO",
+                "        sum = sum + i * 2 - i / 3;",
+                "        i = i + 1;",
+                "    END",
+                "    print(sum);",
+                "    RETURN 0;",
+                "END")));
+        PROGRAMS.put("range", new Program(5, 10, String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET sum: Integer = 0;",
+                "    FOR i IN range(0, 100000) DO",
+                "        sum = sum + i * 2 - i / 3;",
+                "    END",
+                "    print(sum);",
+                "    RETURN 0;",
+                "END")));
+        PROGRAMS.put("parallel", new Program(3, 5, String.join("\n",
+                "DEF work(n: Integer): Integer DO",
+                "    LET acc: Integer = 0;",
+                "    FOR k IN range(0, 200) DO",
+                "        acc = acc + n * k / 7;",
+                "    END",
+                "    RETURN acc;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET sum: Integer = 0;",
+                "    FOR i IN range(0, 20000) DO",
+                "        sum = sum + work(i);",
+                "    END",
+                "    print(sum);",
+                "    RETURN 0;",
+                "END")));
+        PROGRAMS.put("fib", new Program(5, 10, String.join("\n",
+                "DEF fib(n: Integer): Integer DO",
+                "    IF n < 2 DO",
+                "        RETURN n;",
+                "    END",
+                "    RETURN fib(n - 1) + fib(n - 2);",
+                "END",
+                "DEF main(): Integer DO",
+                "    print(fib(20));",
+                "    RETURN 0;",
+                "END")));
+
+        ENGINES.put("interpreter", source -> new Interpreter(null).visit(source));
+        ENGINES.put("tiered", source -> new Interpreter(null, new Tiering()).visit(source));
+        ENGINES.put("nodes", source -> new NodeCompiler(null).visit(source).execute());
+        ENGINES.put("vm", source -> new VirtualMachine(new BytecodeCompiler().compile(source)).execute());
+        ENGINES.put("jit", source -> new JvmCompiler().compile(source).execute());
+    }
+
+    public static void main(String[] args) {
+        PrintStream out = System.out;
+        for (Map.Entry<String, Program> program : PROGRAMS.entrySet()) {
+            if (args.length > 0 && !java.util.Arrays.asList(args).contains(program.getKey())) {
+                continue;
+            }
+            Ast.Source source = new Parser(new Lexer(program.getValue().source).lex()).parseSource();
+            new Analyzer(null).visit(source);
+
+            for (Map.Entry<String, Engine> engine : ENGINES.entrySet()) {
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    for (int i = 0; i < program.getValue().warmup; i++) {
+                        engine.getValue().run(source);
+                    }
+                    long start = System.nanoTime();
+                    for (int i = 0; i < program.getValue().iterations; i++) {
+                        engine.getValue().run(source);
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    out.printf("%-10s %-12s %10.3f ms/op%n", program.getKey(), engine.getKey(), elapsed / 1e6 / program.getValue().iterations);
+                } finally {
+                    System.setOut(out);
+                }
+            }
+        }
+    }
+
+    private static final class Program {
+
+        private final int warmup;
+        private final int iterations;
+        private final String source;
+
+        private Program(int warmup, int iterations, String source) {
+            this.warmup = warmup;
+            this.iterations = iterations;
+            this.source = source;
+        }
+
+    }
+
+    private interface Engine {
+
+        void run(Ast.Source source);
+
+    }
+
+}
@@ -0,0 +1,206 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+
+/**
+ * Limits on a single execution: a number of steps, where each loop iteration
+ * and each call is one step, a wall-clock deadline measured from when the
+ * execution starts, and a quota of bytes retained. The interpreter spends a
+ * step at every back-edge and call site, and an execution exceeding any limit,
+ * or {@link #cancel()}ed from another thread, ends by throwing
+ * {@link Exceeded}.
+ *
+ * Memory is accounted as the approximate size of the data an execution
+ * retains: every scope and the variables in it, with their values, and
+ * everything it prints. A scope is released when it is left, and a variable
+ * assigned a new value is charged only the difference, so temporaries such
+ * as the result of a comparison are never counted, and a loop which keeps
+ * nothing runs in constant memory. A value held by several variables is
+ * counted once for each.
+ *
+ * The clock and the cancellation flag are only polled every
+ * {@value #POLL_INTERVAL} steps, so a step is a decrement and a comparison.
+ * An interpreter without a budget does no checks at all.
+ */
+public final class Budget {
+
+    private static final int POLL_INTERVAL = 1 << 10;
+
+    /**
+     * Approximate sizes in bytes, including headers and the maps behind a
+     * scope, on a 64-bit JVM with compressed pointers.
+     */
+    static final long SCOPE = 128;
+    static final long VARIABLE = 64;
+
+    private final long steps;
+    private final long timeout;
+    private final long bytes;
+
+    private long remaining;
+    private long deadline;
+    private int untilPoll;
+    private long retained;
+    private long peak;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a budget of the given steps and timeout, either of which may be
+     * {@link Long#MAX_VALUE} or {@code null} respectively to leave it
+     * unlimited.
+     */
+    public Budget(long steps, Duration timeout) {
+        this(steps, timeout, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a budget which also limits the bytes retained, or not if
+     * {@link Long#MAX_VALUE}.
+     */
+    public Budget(long steps, Duration timeout, long bytes) {
+        this.steps = steps;
+        this.timeout = timeout == null ? Long.MAX_VALUE : timeout.toNanos();
+        this.bytes = bytes;
+        start();
+    }
+
+    public static Budget steps(long steps) {
+        return new Budget(steps, null);
+    }
+
+    public static Budget timeout(Duration timeout) {
+        return new Budget(Long.MAX_VALUE, timeout);
+    }
+
+    public static Budget memory(long bytes) {
+        return new Budget(Long.MAX_VALUE, null, bytes);
+    }
+
+    /**
+     * Resets the steps and memory and starts the clock, at the start of
+     * each execution.
+     */
+    void start() {
+        remaining = steps;
+        deadline = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeout;
+        untilPoll = POLL_INTERVAL;
+        retained = 0;
+        peak = 0;
+    }
+
+    /**
+     * Spends a step, throwing if the budget is exhausted.
+     */
+    void step() {
+        if(--remaining < 0) {
+            throw new Exceeded("The step budget of " + steps + " was exceeded.");
+        }
+        if(--untilPoll == 0) {
+            untilPoll = POLL_INTERVAL;
+            poll();
+        }
+    }
+
+    /**
+     * Charges the given bytes as retained, throwing if over the quota. The
+     * size may be negative when a variable is given a smaller value.
+     */
+    void allocate(long size) {
+        retained += size;
+        if(retained > peak) {
+            peak = retained;
+            if(peak > bytes) {
+                throw new Exceeded("The memory quota of " + bytes + " bytes was exceeded.");
+            }
+        }
+    }
+
+    /**
+     * Releases bytes charged earlier, once they are no longer retained.
+     */
+    void release(long size) {
+        retained -= size;
+    }
+
+    /**
+     * Returns the approximate size in bytes of a scope and its variables,
+     * with their values, as charged while the scope is live.
+     */
+    static long sizeOf(Scope scope) {
+        long size = SCOPE;
+        for(Environment.Variable variable : scope.getVariables()) {
+            size += VARIABLE + sizeOf(variable.getValue().getValue());
+        }
+        return size;
+    }
+
+    /**
+     * Returns the approximate size in bytes of a value, excluding the
+     * {@link Environment.PlcObject} wrapping it.
+     */
+    static long sizeOf(Object value) {
+        if(value instanceof String) {
+            return 40 + ((String) value).length();
+        }
+        else if(value instanceof Rope) {
+            // Charged as the String it flattens to when printed or compared,
+            // in constant time. A variable appended to is charged only the
+            // difference, the piece appended, so a loop building a String
+            // is charged in proportion to its length rather than its square.
+            return 40 + ((Rope) value).length();
+        }
+        else if(value instanceof BigInteger) {
+            return 56 + 4 * ((((BigInteger) value).bitLength() + 31) / 32);
+        }
+        else if(value instanceof BigDecimal) {
+            return 96 + ((BigDecimal) value).precision() / 2;
+        }
+        return 16;
+    }
+
+    private void poll() {
+        if(cancelled) {
+            throw new Exceeded("The execution was cancelled.");
+        }
+        if(deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new Exceeded("The deadline of " + Duration.ofNanos(timeout).toMillis() + "ms was exceeded.");
+        }
+    }
+
+    /**
+     * Asks the execution to stop at its next poll. May be called from any
+     * thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the number of steps spent by the current execution.
+     */
+    public long getStepsUsed() {
+        return steps - Math.max(remaining, 0);
+    }
+
+    /**
+     * Returns the most bytes the current execution has retained at once.
+     */
+    public long getBytesUsed() {
+        return peak;
+    }
+
+    /**
+     * Thrown out of an execution which exceeded its budget. The interpreter
+     * unwinds normally, so its output is flushed and it may be reused.
+     */
+    public static final class Exceeded extends RuntimeException {
+
+        public Exceeded(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * A compiled program for the {@link VirtualMachine}. Each method's code is an
+ * int array of opcodes, each followed by its operands; literals live in a
+ * constant pool shared by the whole program. See {@link BytecodeCompiler}.
+ */
+public final class Bytecode {
+
+    /** {@code CONST index}: pushes {@code constants[index]}. */
+    public static final int CONST = 0;
+    /** {@code LOAD slot}: pushes a local variable. */
+    public static final int LOAD = 1;
+    /** {@code STORE slot}: pops into a local variable. */
+    public static final int STORE = 2;
+    /** {@code GLOAD index}: pushes a field. */
+    public static final int GLOAD = 3;
+    /** {@code GSTORE index}: pops into a field. */
+    public static final int GSTORE = 4;
+    public static final int ADD = 5;
+    public static final int SUB = 6;
+    public static final int MUL = 7;
+    public static final int DIV = 8;
+    public static final int LT = 9;
+    public static final int LE = 10;
+    public static final int GT = 11;
+    public static final int GE = 12;
+    public static final int EQ = 13;
+    public static final int NE = 14;
+    /** {@code JUMP target}: continues at {@code target}. */
+    public static final int JUMP = 15;
+    /** {@code JUMP_FALSE target}: pops a Boolean, jumping if it is false. */
+    public static final int JUMP_FALSE = 16;
+    /** {@code JUMP_TRUE target}: pops a Boolean, jumping if it is true. */
+    public static final int JUMP_TRUE = 17;
+    /** {@code CALL index}: pops the arguments of {@code methods[index]} and pushes its result. */
+    public static final int CALL = 18;
+    /** {@code PRINT}: pops a value, prints it and pushes NIL. */
+    public static final int PRINT = 19;
+    public static final int POP = 20;
+    /** {@code RETURN}: pops the result and returns it to the caller. */
+    public static final int RETURN = 21;
+    /** {@code ITER}: pops an Iterable and pushes its iterator (over raw values for a {@link Range}). */
+    public static final int ITER = 22;
+    /** {@code NEXT slot target}: stores the iterator's next element in a local, or pops it and jumps when exhausted. */
+    public static final int NEXT = 23;
+    /** {@code RANGE arity}: pops the start, end and (if the arity is three) step, and pushes the {@link Range}. */
+    public static final int RANGE = 24;
+
+    private static final String[] NAMES = {
+            "CONST", "LOAD", "STORE", "GLOAD", "GSTORE", "ADD", "SUB", "MUL", "DIV",
+            "LT", "LE", "GT", "GE", "EQ", "NE", "JUMP", "JUMP_FALSE", "JUMP_TRUE",
+            "CALL", "PRINT", "POP", "RETURN", "ITER", "NEXT", "RANGE"
+    };
+
+    private static final int[] OPERANDS = {
+            1, 1, 1, 1, 1, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 1, 1, 1,
+            1, 0, 0, 0, 0, 2, 1
+    };
+
+    private Bytecode() {}
+
+    public static String getName(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static int getOperandCount(int opcode) {
+        return OPERANDS[opcode];
+    }
+
+    public static final class Method {
+
+        private final String name;
+        private final int arity;
+        private final int frameSize;
+        private final int stackSize;
+        private final int[] code;
+
+        public Method(String name, int arity, int frameSize, int stackSize, int[] code) {
+            this.name = name;
+            this.arity = arity;
+            this.frameSize = frameSize;
+            this.stackSize = stackSize;
+            this.code = code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public int getFrameSize() {
+            return frameSize;
+        }
+
+        public int getStackSize() {
+            return stackSize;
+        }
+
+        public int[] getCode() {
+            return code;
+        }
+
+        @Override
+        public String toString() {
+            return "Bytecode.Method{" +
+                    "name='" + name + '\'' +
+                    ", arity=" + arity +
+                    ", frameSize=" + frameSize +
+                    ", stackSize=" + stackSize +
+                    ", length=" + code.length +
+                    '}';
+        }
+
+    }
+
+    public static final class Program {
+
+        private final Object[] constants;
+        private final String[] fields;
+        private final List<Method> methods;
+        private final Method initializer;
+        private final int main;
+
+        public Program(Object[] constants, String[] fields, List<Method> methods, Method initializer, int main) {
+            this.constants = constants;
+            this.fields = fields;
+            this.methods = methods;
+            this.initializer = initializer;
+            this.main = main;
+        }
+
+        public Object[] getConstants() {
+            return constants;
+        }
+
+        public String[] getFields() {
+            return fields;
+        }
+
+        public List<Method> getMethods() {
+            return methods;
+        }
+
+        /**
+         * Returns the method initializing the fields, run before {@code main}.
+         */
+        public Method getInitializer() {
+            return initializer;
+        }
+
+        public Method getMain() {
+            return methods.get(main);
+        }
+
+    }
+
+    /**
+     * Returns a human readable listing of every method in the program.
+     */
+    public static String disassemble(Program program) {
+        StringBuilder builder = new StringBuilder();
+        disassemble(program, program.getInitializer(), builder);
+        for (Method method : program.getMethods()) {
+            builder.append(System.lineSeparator());
+            disassemble(program, method, builder);
+        }
+        return builder.toString();
+    }
+
+    private static void disassemble(Program program, Method method, StringBuilder builder) {
+        builder.append(method.getName()).append('/').append(method.getArity())
+                .append(" (frame ").append(method.getFrameSize())
+                .append(", stack ").append(method.getStackSize()).append(")")
+                .append(System.lineSeparator());
+        int[] code = method.getCode();
+        for (int pc = 0; pc < code.length; pc += 1 + getOperandCount(code[pc])) {
+            builder.append(String.format("%6d: %-10s", pc, getName(code[pc])));
+            for (int i = 1; i <= getOperandCount(code[pc]); i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            switch (code[pc]) {
+                case CONST:
+                    Object constant = program.getConstants()[code[pc + 1]];
+                    builder.append("    // ").append(constant instanceof String ? "\"" + constant + "\"" : constant);
+                    break;
+                case GLOAD:
+                case GSTORE:
+                    builder.append("    // ").append(program.getFields()[code[pc + 1]]);
+                    break;
+                case CALL:
+                    Method callee = program.getMethods().get(code[pc + 1]);
+                    builder.append("    // ").append(callee.getName()).append('/').append(callee.getArity());
+                    break;
+            }
+            builder.append(System.lineSeparator());
+        }
+    }
+
+}
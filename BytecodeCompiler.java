@@ -0,0 +1,416 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed {@link Ast.Source} into {@link Bytecode} for the
+ * {@link VirtualMachine}. Locals are resolved to frame slots, fields to
+ * indices in the global table and calls to indices in the method table, so
+ * no names are looked up at runtime.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Void> {
+
+    private static final Object NIL = Environment.NIL.getValue();
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final Map<String, Integer> fields = new HashMap<>();
+    private final List<String> fieldNames = new ArrayList<>();
+    private final Map<String, Integer> methodIndices = new HashMap<>();
+    private final List<Bytecode.Method> methods = new ArrayList<>();
+
+    private final Deque<Map<String, Integer>> blocks = new ArrayDeque<>();
+    private int nextSlot = 0;
+    private int frameSize = 0;
+
+    private int[] code = new int[64];
+    private int length = 0;
+    private int depth = 0;
+    private int stackSize = 0;
+
+    private Bytecode.Program program = null;
+
+    /**
+     * Compiles the source, returning the resulting program.
+     */
+    public Bytecode.Program compile(Ast.Source ast) {
+        visit(ast);
+        return program;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        begin();
+        for(int i = 0; i < ast.getFields().size(); i++) {
+            visit(ast.getFields().get(i));
+        }
+        emit(Bytecode.CONST, constant(NIL), 1);
+        emit(Bytecode.RETURN, -1);
+        Bytecode.Method initializer = end("<init>", 0);
+
+        for(int i = 0; i < ast.getMethods().size(); i++) {
+            Ast.Method method = ast.getMethods().get(i);
+            String key = method.getName() + "/" + method.getParameters().size();
+            if(methodIndices.containsKey(key)) {
+                throw new RuntimeException("The function " + key + " is already defined in this scope.");
+            }
+            methodIndices.put(key, i);
+            methods.add(null);
+        }
+        for(int i = 0; i < ast.getMethods().size(); i++) {
+            visit(ast.getMethods().get(i));
+        }
+        if(!methodIndices.containsKey("main/0")) {
+            throw new RuntimeException("The function main/0 is not defined in this scope.");
+        }
+
+        program = new Bytecode.Program(constants.toArray(), fieldNames.toArray(new String[0]),
+                methods, initializer, methodIndices.get("main/0"));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        if(fields.containsKey(ast.getName())) {
+            throw new RuntimeException("The variable " + ast.getName() + " is already defined in this scope.");
+        }
+        if(ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            fields.put(ast.getName(), fieldNames.size());
+            emit(Bytecode.GSTORE, fieldNames.size(), -1);
+        }
+        else {
+            fields.put(ast.getName(), fieldNames.size());
+        }
+        fieldNames.add(ast.getName());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        begin();
+        blocks.push(new HashMap<>());
+        try {
+            for(int i = 0; i < ast.getParameters().size(); i++) {
+                define(ast.getParameters().get(i));
+            }
+            for(int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
+        }
+        finally {
+            blocks.pop();
+        }
+        emit(Bytecode.CONST, constant(NIL), 1);
+        emit(Bytecode.RETURN, -1);
+
+        int index = methodIndices.get(ast.getName() + "/" + ast.getParameters().size());
+        methods.set(index, end(ast.getName(), ast.getParameters().size()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        emit(Bytecode.POP, -1);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        if(ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        }
+        else {
+            emit(Bytecode.CONST, constant(NIL), 1);
+        }
+        emit(Bytecode.STORE, define(ast.getName()), -1);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        if(!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException();
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if(receiver.getReceiver().isPresent()) {
+            throw new RuntimeException("Field access on a receiver is not supported by the virtual machine.");
+        }
+
+        visit(ast.getValue());
+        Integer slot = lookup(receiver.getName());
+        if(slot != null) {
+            emit(Bytecode.STORE, slot, -1);
+        }
+        else {
+            emit(Bytecode.GSTORE, field(receiver.getName()), -1);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        visit(ast.getCondition());
+        int jumpElse = emit(Bytecode.JUMP_FALSE, -1, -1);
+        block(ast.getThenStatements());
+        int jumpEnd = emit(Bytecode.JUMP, -1, 0);
+        patch(jumpElse);
+        block(ast.getElseStatements());
+        patch(jumpEnd);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        visit(ast.getValue());
+        emit(Bytecode.ITER, 0);
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            int loop = length;
+            int next = emit(Bytecode.NEXT, define(ast.getName()), -1, 0);
+            for(int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
+            emit(Bytecode.JUMP, loop, 0);
+            code[next + 2] = length;
+            depth--;
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        int loop = length;
+        visit(ast.getCondition());
+        int jumpEnd = emit(Bytecode.JUMP_FALSE, -1, -1);
+        block(ast.getStatements());
+        emit(Bytecode.JUMP, loop, 0);
+        patch(jumpEnd);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        emit(Bytecode.RETURN, -1);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        emit(Bytecode.CONST, constant(ast.getLiteral() == null ? NIL : ast.getLiteral()), 1);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        switch(ast.getOperator()) {
+            case "AND":
+            case "OR": {
+                // Both operands must be Booleans, so each is tested with a jump
+                // which short-circuits to the result once it is decided.
+                int shortCircuit = ast.getOperator().equals("AND") ? Bytecode.JUMP_FALSE : Bytecode.JUMP_TRUE;
+                visit(ast.getLeft());
+                int first = emit(shortCircuit, -1, -1);
+                visit(ast.getRight());
+                int second = emit(shortCircuit, -1, -1);
+                emit(Bytecode.CONST, constant(shortCircuit == Bytecode.JUMP_TRUE ? Boolean.FALSE : Boolean.TRUE), 1);
+                int jumpEnd = emit(Bytecode.JUMP, -1, 0);
+                depth--;
+                patch(first);
+                patch(second);
+                emit(Bytecode.CONST, constant(shortCircuit == Bytecode.JUMP_TRUE ? Boolean.TRUE : Boolean.FALSE), 1);
+                patch(jumpEnd);
+                return null;
+            }
+        }
+
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        switch(ast.getOperator()) {
+            case "+": emit(Bytecode.ADD, -1); break;
+            case "-": emit(Bytecode.SUB, -1); break;
+            case "*": emit(Bytecode.MUL, -1); break;
+            case "/": emit(Bytecode.DIV, -1); break;
+            case "<": emit(Bytecode.LT, -1); break;
+            case "<=": emit(Bytecode.LE, -1); break;
+            case ">": emit(Bytecode.GT, -1); break;
+            case ">=": emit(Bytecode.GE, -1); break;
+            case "==": emit(Bytecode.EQ, -1); break;
+            case "!=": emit(Bytecode.NE, -1); break;
+            default: throw new RuntimeException("Unknown operator " + ast.getOperator() + ".");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new RuntimeException("Field access on a receiver is not supported by the virtual machine.");
+        }
+
+        Integer slot = lookup(ast.getName());
+        if(slot != null) {
+            emit(Bytecode.LOAD, slot, 1);
+        }
+        else {
+            emit(Bytecode.GLOAD, field(ast.getName()), 1);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new RuntimeException("Method calls on a receiver are not supported by the virtual machine.");
+        }
+
+        for(int i = 0; i < ast.getArguments().size(); i++) {
+            visit(ast.getArguments().get(i));
+        }
+
+        String key = ast.getName() + "/" + ast.getArguments().size();
+        if(methodIndices.containsKey(key)) {
+            emit(Bytecode.CALL, methodIndices.get(key), 1 - ast.getArguments().size());
+        }
+        else if(key.equals("print/1")) {
+            emit(Bytecode.PRINT, 0);
+        }
+        else if(key.equals("range/2") || key.equals("range/3")) {
+            emit(Bytecode.RANGE, ast.getArguments().size(), 1 - ast.getArguments().size());
+        }
+        else {
+            throw new RuntimeException("The function " + key + " is not defined in this scope.");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Spawn ast) {
+        throw new RuntimeException("SPAWN is not supported by the virtual machine.");
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Await ast) {
+        throw new RuntimeException("AWAIT is not supported by the virtual machine.");
+    }
+
+    private void begin() {
+        length = 0;
+        depth = 0;
+        stackSize = 0;
+        nextSlot = 0;
+        frameSize = 0;
+    }
+
+    private Bytecode.Method end(String name, int arity) {
+        return new Bytecode.Method(name, arity, frameSize, stackSize, Arrays.copyOf(code, length));
+    }
+
+    private void block(List<Ast.Stmt> statements) {
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            for(int i = 0; i < statements.size(); i++) {
+                visit(statements.get(i));
+            }
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+    }
+
+    /**
+     * Appends an instruction, tracking the operand stack depth it leaves
+     * behind, and returns its position.
+     */
+    private int emit(int opcode, int... operandsAndEffect) {
+        if(length + operandsAndEffect.length > code.length) {
+            code = Arrays.copyOf(code, code.length * 2 + operandsAndEffect.length);
+        }
+        int position = length;
+        code[length++] = opcode;
+        for(int i = 0; i < operandsAndEffect.length - 1; i++) {
+            code[length++] = operandsAndEffect[i];
+        }
+        depth += operandsAndEffect[operandsAndEffect.length - 1];
+        stackSize = Math.max(stackSize, depth);
+        return position;
+    }
+
+    /**
+     * Points the jump at the given position to the current end of the code.
+     */
+    private void patch(int jump) {
+        code[jump + 1] = length;
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndices.get(value);
+        if(index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndices.put(value, index);
+        }
+        return index;
+    }
+
+    private int field(String name) {
+        if(!fields.containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        }
+        return fields.get(name);
+    }
+
+    private int define(String name) {
+        if(blocks.peek().containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        int slot = nextSlot++;
+        frameSize = Math.max(frameSize, nextSlot);
+        blocks.peek().put(name, slot);
+        return slot;
+    }
+
+    private Integer lookup(String name) {
+        for(Map<String, Integer> block : blocks) {
+            if(block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+}
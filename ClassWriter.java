@@ -0,0 +1,519 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for JVM class files, used by the {@link JvmCompiler}.
+ *
+ * Classes are written with version 49 (Java 5), the last version verified by
+ * type inference, so no stack map frames need to be computed. Callers track
+ * the operand stack effect of each instruction they emit; invocations and
+ * field instructions compute theirs from the descriptor.
+ */
+public final class ClassWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int ICONST_1 = 0x04;
+    public static final int LCONST_0 = 0x09;
+    public static final int LCONST_1 = 0x0A;
+    public static final int DCONST_0 = 0x0E;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int DSTORE = 0x39;
+    public static final int ASTORE = 0x3A;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int IADD = 0x60;
+    public static final int LADD = 0x61;
+    public static final int DADD = 0x63;
+    public static final int ISUB = 0x64;
+    public static final int DSUB = 0x67;
+    public static final int IMUL = 0x68;
+    public static final int DMUL = 0x6B;
+    public static final int IDIV = 0x6C;
+    public static final int LDIV = 0x6D;
+    public static final int DDIV = 0x6F;
+    public static final int LCMP = 0x94;
+    public static final int DCMPL = 0x97;
+    public static final int DCMPG = 0x98;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9A;
+    public static final int IFLT = 0x9B;
+    public static final int IFGE = 0x9C;
+    public static final int IFGT = 0x9D;
+    public static final int IFLE = 0x9E;
+    public static final int IF_ICMPEQ = 0x9F;
+    public static final int IF_ICMPNE = 0xA0;
+    public static final int IF_ICMPLT = 0xA1;
+    public static final int IF_ICMPGE = 0xA2;
+    public static final int IF_ICMPGT = 0xA3;
+    public static final int IF_ICMPLE = 0xA4;
+    public static final int GOTO = 0xA7;
+    public static final int IRETURN = 0xAC;
+    public static final int LRETURN = 0xAD;
+    public static final int DRETURN = 0xAF;
+    public static final int ARETURN = 0xB0;
+    public static final int RETURN = 0xB1;
+    public static final int GETSTATIC = 0xB2;
+    public static final int PUTSTATIC = 0xB3;
+    public static final int GETFIELD = 0xB4;
+    public static final int PUTFIELD = 0xB5;
+    public static final int INVOKEVIRTUAL = 0xB6;
+    public static final int INVOKESPECIAL = 0xB7;
+    public static final int INVOKESTATIC = 0xB8;
+    public static final int INVOKEINTERFACE = 0xB9;
+    public static final int NEW = 0xBB;
+    public static final int CHECKCAST = 0xC0;
+
+    private static final int WIDE = 0xC4;
+    private static final int IINC = 0x84;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+
+    private static final int VERSION = 49;
+
+    private final String name;
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolSize = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    /**
+     * Creates a writer for a class with the given internal name, such as
+     * {@code plc/project/Script}.
+     */
+    public ClassWriter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void field(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Starts a method, returning the builder for its code.
+     */
+    public Code method(int access, String name, String descriptor) {
+        Code code = new Code(access, utf8(name), utf8(descriptor));
+        methods.add(code);
+        return code;
+    }
+
+    public byte[] toByteArray() {
+        int thisClass = classRef(name);
+        int superClass = classRef("java/lang/Object");
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.write(out, codeName);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int entry(String key, int size, PoolWriter writer) {
+        Integer index = entries.get(key);
+        if (index == null) {
+            index = poolSize;
+            try {
+                writer.write(poolOut);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            poolSize += size;
+            entries.put(key, index);
+        }
+        return index;
+    }
+
+    public int utf8(String value) {
+        return entry("Utf8:" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    public int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return entry("Class:" + internalName, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    public int stringConstant(String value) {
+        int valueIndex = utf8(value);
+        return entry("String:" + value, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(valueIndex);
+        });
+    }
+
+    public int intConstant(int value) {
+        return entry("Integer:" + value, 1, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    public int longConstant(long value) {
+        return entry("Long:" + value, 2, out -> {
+            out.writeByte(5);
+            out.writeLong(value);
+        });
+    }
+
+    public int doubleConstant(double value) {
+        return entry("Double:" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return entry("NameAndType:" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        return entry(tag + ":" + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    /**
+     * Returns the number of stack slots taken by a value of the given field
+     * descriptor.
+     */
+    public static int size(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'V':
+                return 0;
+            case 'D':
+            case 'J':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Returns the stack slots taken by the parameters of a method descriptor.
+     */
+    private static int parameterSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i) + 1;
+                size++;
+            } else if (c == '[') {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+                size++;
+            } else {
+                size += size(String.valueOf(c));
+                i++;
+            }
+        }
+        return size;
+    }
+
+    private interface PoolWriter {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * A branch target. Jumps emitted before the label is placed are patched
+     * once its position is known.
+     */
+    public static final class Label {
+
+        private int position = -1;
+        private final List<int[]> fixups = new ArrayList<>();
+
+    }
+
+    /**
+     * Builds the code of a single method.
+     */
+    public final class Code {
+
+        private final int access;
+        private final int nameIndex;
+        private final int descriptorIndex;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private int depth = 0;
+        private int maxStack = 0;
+        private int maxLocals = 0;
+
+        private Code(int access, int nameIndex, int descriptorIndex) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descriptorIndex = descriptorIndex;
+        }
+
+        private void write1(int value) {
+            if (length == code.length) {
+                code = java.util.Arrays.copyOf(code, code.length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void write2(int value) {
+            write1(value >> 8);
+            write1(value);
+        }
+
+        private void adjust(int delta) {
+            depth += delta;
+            maxStack = Math.max(maxStack, depth);
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Sets the stack depth, used after unconditional jumps where the next
+         * instruction is only reached through a label.
+         */
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+
+        public void locals(int count) {
+            maxLocals = Math.max(maxLocals, count);
+        }
+
+        /**
+         * Emits an instruction without operands.
+         */
+        public void insn(int opcode, int delta) {
+            write1(opcode);
+            adjust(delta);
+        }
+
+        /**
+         * Emits an instruction with a one byte local variable operand.
+         */
+        public void var(int opcode, int slot, int delta) {
+            if (slot > 255) {
+                write1(WIDE);
+            }
+            write1(opcode);
+            if (slot > 255) {
+                write2(slot);
+            } else {
+                write1(slot);
+            }
+            adjust(delta);
+        }
+
+        public void iinc(int slot, int increment) {
+            write1(WIDE);
+            write1(IINC);
+            write2(slot);
+            write2(increment);
+        }
+
+        public void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                write1(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                write1(BIPUSH);
+                write1(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                write1(SIPUSH);
+                write2(value);
+            } else {
+                ldc(intConstant(value), 1);
+                return;
+            }
+            adjust(1);
+        }
+
+        public void pushLong(long value) {
+            if (value == 0 || value == 1) {
+                write1(LCONST_0 + (int) value);
+            } else {
+                write1(LDC2_W);
+                write2(longConstant(value));
+            }
+            adjust(2);
+        }
+
+        public void pushDouble(double value) {
+            write1(LDC2_W);
+            write2(doubleConstant(value));
+            adjust(2);
+        }
+
+        public void pushString(String value) {
+            ldc(stringConstant(value), 1);
+        }
+
+        private void ldc(int index, int delta) {
+            if (index > 255) {
+                write1(LDC_W);
+                write2(index);
+            } else {
+                write1(LDC);
+                write1(index);
+            }
+            adjust(delta);
+        }
+
+        /**
+         * Emits an instruction referencing a class, such as {@code new} or
+         * {@code checkcast}.
+         */
+        public void type(int opcode, String internalName, int delta) {
+            write1(opcode);
+            write2(classRef(internalName));
+            adjust(delta);
+        }
+
+        public void field(int opcode, String owner, String name, String descriptor) {
+            write1(opcode);
+            write2(memberRef(9, owner, name, descriptor));
+            int size = size(descriptor);
+            switch (opcode) {
+                case GETSTATIC: adjust(size); break;
+                case PUTSTATIC: adjust(-size); break;
+                case GETFIELD: adjust(size - 1); break;
+                default: adjust(-size - 1); break;
+            }
+        }
+
+        public void invoke(int opcode, String owner, String name, String descriptor) {
+            boolean isInterface = opcode == INVOKEINTERFACE;
+            write1(opcode);
+            write2(memberRef(isInterface ? 11 : 10, owner, name, descriptor));
+            int parameters = parameterSize(descriptor);
+            if (isInterface) {
+                write1(parameters + 1);
+                write1(0);
+            }
+            int receiver = opcode == INVOKESTATIC ? 0 : 1;
+            adjust(-parameters - receiver + size(descriptor.substring(descriptor.indexOf(')') + 1)));
+        }
+
+        public void jump(int opcode, Label label, int delta) {
+            int start = length;
+            write1(opcode);
+            if (label.position >= 0) {
+                write2(offset(label.position - start));
+            } else {
+                label.fixups.add(new int[] {start, length});
+                write2(0);
+            }
+            adjust(delta);
+        }
+
+        public void mark(Label label) {
+            label.position = length;
+            for (int[] fixup : label.fixups) {
+                int offset = offset(length - fixup[0]);
+                code[fixup[1]] = (byte) (offset >> 8);
+                code[fixup[1] + 1] = (byte) offset;
+            }
+            label.fixups.clear();
+        }
+
+        private int offset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Method is too large to be compiled.");
+            }
+            return offset;
+        }
+
+        private void write(DataOutputStream out, int codeName) throws IOException {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package plc.project;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Times loops computing with Decimals under each {@link Arithmetic}, both in
+ * the interpreter and in the Java generated for it (compiled as by
+ * {@link PgoBenchmark}, so a JDK is required), checking that the two print
+ * the same. Times are relative to the interpreter with the default
+ * arithmetic.
+ */
+public final class DecimalBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> programs = new LinkedHashMap<>();
+        programs.put("series", String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET pi: Decimal = 0.0;",
+                "    LET sign: Decimal = 4.0;",
+                "    LET d: Decimal = 1.0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 20000 DO",
+                "        pi = pi + sign / d;",
+                "        sign = 0.0 - sign;",
+                "        d = d + 2.0;",
+                "        i = i + 1;",
+                "    END",
+                "    print(pi);",
+                "    RETURN 0;",
+                "END"));
+        programs.put("interest", String.join("\n",
+                "LET rate: Decimal = 0.0425;",
+                "DEF main(): Integer DO",
+                "    LET balance: Decimal = 1000.0;",
+                "    LET month: Integer = 0;",
+                "    WHILE month < 20000 DO",
+                "        balance = balance + balance * rate / 12.0 + 25.5;",
+                "        IF balance > 1000000.0 DO",
+                "            balance = balance - 999000.0;",
+                "        END",
+                "        month = month + 1;",
+                "    END",
+                "    print(balance);",
+                "    RETURN 0;",
+                "END"));
+        List<Arithmetic> arithmetics = Arrays.asList(Arithmetic.DEFAULT, Arithmetic.exact(MathContext.DECIMAL64),
+                Arithmetic.exact(MathContext.DECIMAL128), Arithmetic.DOUBLE);
+
+        for (Map.Entry<String, String> program : programs.entrySet()) {
+            double baseline = 0;
+            for (Arithmetic arithmetic : arithmetics) {
+                Ast.Source source = new Parser(new Lexer(program.getValue()).lex()).parseSource();
+                Analyzer analyzer = new Analyzer(null);
+                analyzer.setArithmetic(arithmetic);
+                analyzer.visit(source);
+
+                Supplier<String> interpreted = () -> {
+                    Output.Memory out = Output.memory();
+                    Interpreter interpreter = new Interpreter(null, null, out);
+                    interpreter.setArithmetic(arithmetic);
+                    interpreter.execute(new Program(source));
+                    return out.getContents();
+                };
+                Constructor<?> generated = PgoBenchmark.compile(generate(source, arithmetic));
+                if (!interpreted.get().equals(PgoBenchmark.run(generated).replace(System.lineSeparator(), "\n"))) {
+                    throw new RuntimeException("The Java generated for " + program.getKey() + " with the " + arithmetic
+                            + " arithmetic printed differently.");
+                }
+
+                double interpreter = time(interpreted);
+                double java = PgoBenchmark.time(generated);
+                if (arithmetic == Arithmetic.DEFAULT) {
+                    baseline = interpreter;
+                }
+                System.out.printf("%-9s %-11s interpreter %9.3f ms/op (%5.2fx)  java %9.3f ms/op  %s",
+                        program.getKey(), arithmetic, interpreter, baseline / interpreter, java, interpreted.get());
+            }
+        }
+    }
+
+    private static String generate(Ast.Source source, Arithmetic arithmetic) {
+        StringWriter java = new StringWriter();
+        PrintWriter writer = new PrintWriter(java);
+        new Generator(writer, 0, null, arithmetic).visit(source);
+        writer.flush();
+        return java.toString();
+    }
+
+    private static double time(Supplier<String> run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            run.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+}
@@ -0,0 +1,252 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides whether the iterations of a FOR loop over a range are independent,
+ * so that they may run in parallel. The check is conservative: every variable
+ * the body assigns must be declared within the body (or be the loop variable
+ * itself), except for reductions, every call must be to a pure method (see
+ * {@link Purity}) or {@code range}, and the body may not return, print or use
+ * receivers.
+ *
+ * A reduction is an Integer or Decimal variable declared outside the loop and
+ * only ever updated as {@code x = x + e} or {@code x = x * e} (or with the
+ * operands swapped, or with more operands as in {@code x = x + a + b}),
+ * always with the same operator, where neither {@code e} nor anything else in
+ * the body reads {@code x}. Since addition and multiplication of BigIntegers
+ * and BigDecimals are exact, partial results of separate iterations may be
+ * combined in any grouping. Decimals computed by an {@link Arithmetic} which
+ * rounds sums and products are not, so engines run their reductions
+ * sequentially (see {@link Arithmetic#isAssociative()}).
+ *
+ * Each visit returns whether the node can run in parallel.
+ */
+public final class Dependence implements Ast.Visitor<Boolean> {
+
+    private final Set<Environment.Function> pure;
+    private final Deque<Set<String>> declared = new ArrayDeque<>();
+    private final Map<String, String> reductions = new LinkedHashMap<>();
+    private final Set<String> reads = new HashSet<>();
+
+    private Dependence(Set<Environment.Function> pure) {
+        this.pure = pure;
+    }
+
+    /**
+     * Returns the reductions of the loop, each variable's name mapped to its
+     * operator, or {@code null} if the loop cannot run in parallel. Calls are
+     * checked against the functions of the methods known to be pure.
+     */
+    public static Map<String, String> analyze(Ast.Stmt.For ast, Set<Environment.Function> pure) {
+        if(!Analyzer.isRange(ast.getValue())) {
+            return null;
+        }
+        Dependence dependence = new Dependence(pure);
+        dependence.declared.push(new HashSet<>());
+        dependence.declared.peek().add(ast.getName());
+        if(!dependence.visit(ast.getStatements())) {
+            return null;
+        }
+        for(String reduction : dependence.reductions.keySet()) {
+            if(dependence.reads.contains(reduction)) {
+                return null;
+            }
+        }
+        return dependence.reductions;
+    }
+
+    @Override
+    public Boolean visit(Ast.Source ast) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Boolean visit(Ast.Field ast) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Boolean visit(Ast.Method ast) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Expression ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Declaration ast) {
+        if(reductions.containsKey(ast.getName())) {
+            return false;
+        }
+        declared.peek().add(ast.getName());
+        return !ast.getValue().isPresent() || visit(ast.getValue().get());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Assignment ast) {
+        if(!(ast.getReceiver() instanceof Ast.Expr.Access) || ((Ast.Expr.Access) ast.getReceiver()).getReceiver().isPresent()) {
+            return false;
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        String name = receiver.getName();
+        if(isLocal(name)) {
+            return visit(ast.getValue());
+        }
+
+        Environment.Type type = receiver.getVariable().getType();
+        if(!(ast.getValue() instanceof Ast.Expr.Binary) || (type != Environment.Type.INTEGER && type != Environment.Type.DECIMAL)) {
+            return false;
+        }
+        Ast.Expr.Binary value = (Ast.Expr.Binary) ast.getValue();
+        String operator = value.getOperator();
+        if(!operator.equals("+") && !operator.equals("*")) {
+            return false;
+        }
+        // The operands of x + a + b, parsed as (x + a) + b, are found down
+        // the left of the tree.
+        List<Ast.Expr> operands = new ArrayList<>();
+        Ast.Expr left = value;
+        while(left instanceof Ast.Expr.Binary && ((Ast.Expr.Binary) left).getOperator().equals(operator)) {
+            operands.add(((Ast.Expr.Binary) left).getRight());
+            left = ((Ast.Expr.Binary) left).getLeft();
+        }
+        if(!isAccess(left, name)) {
+            if(!isAccess(value.getRight(), name)) {
+                return false;
+            }
+            operands = List.of(value.getLeft());
+        }
+        if(!operator.equals(reductions.getOrDefault(name, operator))) {
+            return false;
+        }
+        reductions.put(name, operator);
+        for(Ast.Expr operand : operands) {
+            if(!visit(operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.If ast) {
+        return visit(ast.getCondition()) && block(ast.getThenStatements()) && block(ast.getElseStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.For ast) {
+        if(!visit(ast.getValue())) {
+            return false;
+        }
+        declared.push(new HashSet<>());
+        try {
+            declared.peek().add(ast.getName());
+            return visit(ast.getStatements());
+        }
+        finally {
+            declared.pop();
+        }
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.While ast) {
+        return visit(ast.getCondition()) && block(ast.getStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Return ast) {
+        return false;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Literal ast) {
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Binary ast) {
+        return visit(ast.getLeft()) && visit(ast.getRight());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Access ast) {
+        if(ast.getReceiver().isPresent()) {
+            return false;
+        }
+        reads.add(ast.getName());
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Function ast) {
+        if(ast.getReceiver().isPresent() || !(pure.contains(ast.getFunction()) || Analyzer.isRange(ast))) {
+            return false;
+        }
+        for(Ast.Expr argument : ast.getArguments()) {
+            if(!visit(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Spawn ast) {
+        return false;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Await ast) {
+        return false;
+    }
+
+    private boolean isLocal(String name) {
+        for(Set<String> block : declared) {
+            if(block.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccess(Ast.Expr expression, String name) {
+        return expression instanceof Ast.Expr.Access
+                && !((Ast.Expr.Access) expression).getReceiver().isPresent()
+                && ((Ast.Expr.Access) expression).getName().equals(name);
+    }
+
+    private boolean block(List<Ast.Stmt> statements) {
+        declared.push(new HashSet<>());
+        try {
+            return visit(statements);
+        }
+        finally {
+            declared.pop();
+        }
+    }
+
+    private boolean visit(List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(!visit(statement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
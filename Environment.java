@@ -2,9 +2,9 @@ package plc.project;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Environment {
 
@@ -17,24 +17,28 @@ public final class Environment {
 
     });
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
+    /**
+     * Registered types, which may be looked up by programs being analyzed on
+     * other threads while new types are registered.
+     */
+    private static final Map<String, Type> TYPES = new ConcurrentHashMap<>();
 
     public static Type getType(String name) {
-        if (!TYPES.containsKey(name)) {
+        Type type = TYPES.get(name);
+        if (type == null) {
             throw new RuntimeException("Unknown type " + name + ".");
         }
-        return TYPES.get(name);
+        return type;
     }
 
     public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
+        if (TYPES.putIfAbsent(type.getName(), type) != null) {
             throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
         }
-        TYPES.put(type.getName(), type);
     }
 
     public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
+        return new PlcObject(Type.UNKNOWN, new Scope(null), value);
     }
 
     public static final class Type {
@@ -49,14 +53,51 @@ public final class Environment {
         public static final Type CHARACTER = new Type("Character", "char", new Scope(COMPARABLE.scope));
         public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.scope));
 
+        /**
+         * The type of values created by {@link #create(Object)}, which have
+         * no methods. Sharing it lets call sites cache by type.
+         */
+        static final Type UNKNOWN = new Type("Unknown", "Unknown", new Scope(null));
+
         private final String name;
         private final String jvmName;
         private final Scope scope;
+        private final Type result;
 
         public Type(String name, String jvmName, Scope scope) {
+            this(name, jvmName, scope, null);
+        }
+
+        private Type(String name, String jvmName, Scope scope, Type result) {
             this.name = name;
             this.jvmName = jvmName;
             this.scope = scope;
+            this.result = result;
+        }
+
+        /**
+         * Returns the type of the handles to calls returning the given type,
+         * as produced by {@code SPAWN}, named after it (such as
+         * {@code IntegerHandle}). Handles are registered for the value types,
+         * with the given name of the boxed type on the JVM.
+         */
+        private static Type handle(Type result, String boxed) {
+            return new Type(result.name + "Handle", "java.util.concurrent.CompletableFuture<" + boxed + ">", new Scope(ANY.scope), result);
+        }
+
+        /**
+         * Returns the type of the handles to calls returning the given type.
+         */
+        public static Type handleOf(Type result) {
+            return getType(result.name + "Handle");
+        }
+
+        /**
+         * Returns the type of the result a handle is awaited for, or
+         * {@code null} if this is not the type of a handle.
+         */
+        public Type getResultType() {
+            return result;
         }
 
         public String getName() {
@@ -119,10 +160,20 @@ public final class Environment {
         }
 
         public PlcObject callMethod(String name, List<PlcObject> arguments) {
-            Function function = type.getMethod(name, arguments.size());
-            arguments = new ArrayList<>(arguments);
-            arguments.add(0, this);
-            return function.invoke(arguments);
+            return callMethod(type.getMethod(name, arguments.size()), arguments);
+        }
+
+        /**
+         * Calls an already resolved method of this object's type, passing this
+         * object as the receiver.
+         */
+        public PlcObject callMethod(Function function, List<PlcObject> arguments) {
+            PlcObject[] objects = new PlcObject[arguments.size() + 1];
+            objects[0] = this;
+            for (int i = 0; i < arguments.size(); i++) {
+                objects[i + 1] = arguments.get(i);
+            }
+            return function.invoke(objects);
         }
 
         public Object getValue() {
@@ -204,21 +255,29 @@ public final class Environment {
         private final String jvmName;
         private final List<Type> parameterTypes;
         private final Type returnType;
-        private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+        private final Invoker invoker;
 
         public Function(String name, int arity, java.util.function.Function<List<PlcObject>, PlcObject> function) {
-            this(name, name, new ArrayList<>(), Type.ANY, function);
+            this(name, arity, new ListInvoker(function));
+        }
+
+        public Function(String name, int arity, Invoker invoker) {
+            this(name, name, new ArrayList<>(), Type.ANY, invoker);
             for (int i = 0; i < arity; i++) {
                 this.parameterTypes.add(Type.ANY);
             }
         }
 
         public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, java.util.function.Function<List<PlcObject>, PlcObject> function) {
+            this(name, jvmName, parameterTypes, returnType, new ListInvoker(function));
+        }
+
+        public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, Invoker invoker) {
             this.name = name;
             this.jvmName = jvmName;
             this.parameterTypes = parameterTypes;
             this.returnType = returnType;
-            this.function = function;
+            this.invoker = invoker;
         }
 
         public String getName() {
@@ -237,8 +296,36 @@ public final class Environment {
             return returnType;
         }
 
+        public Invoker getInvoker() {
+            return invoker;
+        }
+
         public PlcObject invoke(List<PlcObject> arguments) {
-            return function.apply(arguments);
+            return invoker.invoke(arguments);
+        }
+
+        public PlcObject invoke(PlcObject[] arguments) {
+            return invoker.invoke(arguments);
+        }
+
+        public PlcObject invoke() {
+            return invoker.invoke();
+        }
+
+        public PlcObject invoke(PlcObject a0) {
+            return invoker.invoke(a0);
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1) {
+            return invoker.invoke(a0, a1);
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1, PlcObject a2) {
+            return invoker.invoke(a0, a1, a2);
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1, PlcObject a2, PlcObject a3) {
+            return invoker.invoke(a0, a1, a2, a3);
         }
 
         @Override
@@ -258,12 +345,77 @@ public final class Environment {
                     ", arity=" + parameterTypes.size() +
                     ", parameterTypes=" + parameterTypes +
                     ", returnType=" + returnType +
-                    ", function=" + function +
+                    ", invoker=" + invoker +
                     '}';
         }
 
     }
 
+    /**
+     * The implementation behind a {@link Function}. Only the general entry
+     * point is required; the fixed-arity entry points let callers pass up to
+     * four arguments without building a list or array, and should be
+     * overridden by implementations that can bind arguments directly.
+     */
+    public static abstract class Invoker {
+
+        public abstract PlcObject invoke(PlcObject[] arguments);
+
+        public PlcObject invoke(List<PlcObject> arguments) {
+            return invoke(arguments.toArray(new PlcObject[0]));
+        }
+
+        public PlcObject invoke() {
+            return invoke(new PlcObject[0]);
+        }
+
+        public PlcObject invoke(PlcObject a0) {
+            return invoke(new PlcObject[] {a0});
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1) {
+            return invoke(new PlcObject[] {a0, a1});
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1, PlcObject a2) {
+            return invoke(new PlcObject[] {a0, a1, a2});
+        }
+
+        public PlcObject invoke(PlcObject a0, PlcObject a1, PlcObject a2, PlcObject a3) {
+            return invoke(new PlcObject[] {a0, a1, a2, a3});
+        }
+
+    }
+
+    /**
+     * Adapts a list-based lambda, as used by builtins and tests, to an
+     * {@link Invoker}.
+     */
+    private static final class ListInvoker extends Invoker {
+
+        private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+
+        private ListInvoker(java.util.function.Function<List<PlcObject>, PlcObject> function) {
+            this.function = function;
+        }
+
+        @Override
+        public PlcObject invoke(PlcObject[] arguments) {
+            return function.apply(Arrays.asList(arguments));
+        }
+
+        @Override
+        public PlcObject invoke(List<PlcObject> arguments) {
+            return function.apply(arguments);
+        }
+
+        @Override
+        public String toString() {
+            return function.toString();
+        }
+
+    }
+
     static {
         registerType(Type.ANY);
         registerType(Type.NIL);
@@ -274,6 +426,13 @@ public final class Environment {
         registerType(Type.DECIMAL);
         registerType(Type.CHARACTER);
         registerType(Type.STRING);
+        registerType(Type.handle(Type.ANY, "Object"));
+        registerType(Type.handle(Type.NIL, "Void"));
+        registerType(Type.handle(Type.BOOLEAN, "Boolean"));
+        registerType(Type.handle(Type.INTEGER, "Integer"));
+        registerType(Type.handle(Type.DECIMAL, "Double"));
+        registerType(Type.handle(Type.CHARACTER, "Character"));
+        registerType(Type.handle(Type.STRING, "String"));
         Type.ANY.scope.defineFunction("stringify", "toString", Arrays.asList(), Type.STRING, args -> Environment.NIL);
         Type.COMPARABLE.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL);
         Type.INTEGER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL);
@@ -1,14 +1,126 @@
 package plc.project;
 
 import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class Generator implements Ast.Visitor<Void> {
 
+    /**
+     * The least number of iterations for which a parallel loop with literal
+     * bounds is generated as a parallel stream.
+     */
+    private static final long PARALLEL_THRESHOLD = 1 << 12;
+
+    /**
+     * The least number of times a statement must have run in the profile for
+     * the calls it makes to be inlined.
+     */
+    private static final long INLINE_THRESHOLD = 1000;
+
     private final PrintWriter writer;
     private int indent = 0;
 
+    /**
+     * The method being generated, if its self tail calls are emitted as
+     * jumps back to the start of its body.
+     */
+    private Ast.Method loop = null;
+
+    /**
+     * The method being generated, whether a parallel loop is being generated
+     * and the reduction of that loop, if any, which is accumulated in a local
+     * named after it with a trailing {@code $}.
+     */
+    private Ast.Method method = null;
+    private boolean parallel = false;
+    private String reduction = null;
+
+    /**
+     * The functions of the methods spawned so far, by name and arity, each
+     * of which gets a method starting it on the executor of spawned calls.
+     */
+    private final Map<String, Environment.Function> spawned = new LinkedHashMap<>();
+
+    /**
+     * The capacity of the memo generated for each pure method, or zero if
+     * calls are not memoized.
+     */
+    private final int memoization;
+
+    /**
+     * The profile of an earlier run of the program, or {@code null}, and,
+     * while generating with one, the method of each function, the statement
+     * being generated and the arguments of the call being inlined by the
+     * names of the parameters they are substituted for.
+     */
+    private final Instrumentation profile;
+    private final Map<Environment.Function, Ast.Method> methods = new IdentityHashMap<>();
+    private Ast.Stmt statement = null;
+    private Map<String, Ast.Expr> inlined = null;
+
+    /**
+     * The names of the fields, and of the String variables a loop being
+     * generated only appends to, each of which is built in a StringBuilder
+     * named after it with a trailing {@code $builder} until the loop ends.
+     * Variables are named as they are generated, since an assignment
+     * redefines the variable it assigns in the Analyzer.
+     */
+    private final Set<String> fields = new HashSet<>();
+    private final Set<String> builders = new HashSet<>();
+
+    /**
+     * How Decimals are computed: as doubles, or as BigDecimals.
+     */
+    private final Arithmetic arithmetic;
+
     public Generator(PrintWriter writer) {
+        this(writer, 0);
+    }
+
+    /**
+     * Creates a generator which memoizes the pure methods (see
+     * {@link Purity}), keeping the results of up to {@code memoization}
+     * distinct arguments per method.
+     */
+    public Generator(PrintWriter writer, int memoization) {
+        this(writer, memoization, null);
+    }
+
+    /**
+     * Creates a generator guided by the profile of an earlier run of the
+     * program (see {@link Instrumentation}). An IF whose condition was false
+     * more often than true is generated with its condition negated and its
+     * branches swapped, and calls from hot statements to pure methods which
+     * only return an expression of their parameters are inlined when their
+     * arguments are literals or variables. Neither changes what the program
+     * does, so a profile of another version of the source is merely less
+     * useful.
+     */
+    public Generator(PrintWriter writer, int memoization, Instrumentation profile) {
+        this(writer, memoization, profile, Arithmetic.DOUBLE);
+    }
+
+    /**
+     * Creates a generator computing Decimals with the given arithmetic. With
+     * {@link Arithmetic#DOUBLE}, as by default, Decimals are Java doubles;
+     * with any other they are BigDecimals, operated on by the method calls
+     * rounding as the arithmetic does, so the program prints what it would in
+     * an {@link Interpreter} with the same arithmetic.
+     */
+    public Generator(PrintWriter writer, int memoization, Instrumentation profile, Arithmetic arithmetic) {
         this.writer = writer;
+        this.memoization = memoization;
+        this.profile = profile;
+        this.arithmetic = arithmetic;
     }
 
     private void print(Object... objects) {
@@ -28,6 +140,25 @@ public final class Generator implements Ast.Visitor<Void> {
         }
     }
 
+    /**
+     * Dispatches to the visit for the node, keeping track of the statement
+     * being generated when there is a profile.
+     */
+    @Override
+    public Void visit(Ast ast) {
+        if(profile == null || !(ast instanceof Ast.Stmt)) {
+            return Ast.Visitor.super.visit(ast);
+        }
+        Ast.Stmt outer = statement;
+        statement = (Ast.Stmt) ast;
+        try {
+            return Ast.Visitor.super.visit(ast);
+        }
+        finally {
+            statement = outer;
+        }
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
         //create a "class Main {"
@@ -38,9 +169,23 @@ public final class Generator implements Ast.Visitor<Void> {
         //  declare each of our methods
         // one of our methods is called main!
 
+        for(Ast.Method method : ast.getMethods()) {
+            methods.put(method.getFunction(), method);
+        }
+        for(Ast.Field field : ast.getFields()) {
+            fields.add(field.getVariable().getJvmName());
+        }
+
         print("public class Main {");
         newline(0);
         ++indent;
+        MathContext context = arithmetic.getContext();
+        if(context != null) {
+            newline(indent);
+            print("private static final java.math.MathContext decimal$context = new java.math.MathContext(",
+                    context.getPrecision(), ", java.math.RoundingMode.", context.getRoundingMode(), ");");
+            newline(0);
+        }
         if(!ast.getFields().isEmpty()) {
             for(int i = 0; i < ast.getFields().size(); i++) {
                 if(i != 0) newline(indent);
@@ -52,7 +197,34 @@ public final class Generator implements Ast.Visitor<Void> {
         newline(indent);
         print("public static void main(String[] args) {");
         newline(++indent);
-        print("System.exit(new Main().main());");
+        boolean spawning = false;
+        for(Ast.Method method : ast.getMethods()) {
+            spawning |= spawns(method.getStatements());
+        }
+        if(spawning) {
+            // As in the interpreter, the program waits for every spawned call
+            // before exiting.
+            print("Main main = new Main();");
+            newline(indent);
+            print("int status = main.main();");
+            newline(indent);
+            print("java.util.concurrent.CompletableFuture<?> task;");
+            newline(indent);
+            print("while ((task = main.spawn$tasks.poll()) != null) {");
+            newline(++indent);
+            print("try {");
+            newline(++indent);
+            print("task.join();");
+            newline(--indent);
+            print("} catch (RuntimeException e) {}");
+            newline(--indent);
+            print("}");
+            newline(indent);
+            print("System.exit(status);");
+        }
+        else {
+            print("System.exit(new Main().main());");
+        }
         newline(--indent);
         print("}");
         newline(0);
@@ -64,6 +236,9 @@ public final class Generator implements Ast.Visitor<Void> {
                 newline(0);
             }
         }
+        if(!spawned.isEmpty()) {
+            spawners();
+        }
 
         newline(--indent);
         print("}");
@@ -73,7 +248,7 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Field ast) {
-        print(ast.getTypeName(), " ", ast.getName());
+        print(type(ast.getVariable().getType()), " ", ast.getName());
         if(ast.getValue().isPresent()) {
             print(" = ");
             visit(ast.getValue().get());
@@ -87,30 +262,265 @@ public final class Generator implements Ast.Visitor<Void> {
     public Void visit(Ast.Method ast) {
         if(!ast.getReturnTypeName().isPresent()) throw new RuntimeException();
 
-        print(Environment.getType(ast.getReturnTypeName().get()).getJvmName(), " ",ast.getName());
+        method = ast;
+        String name = ast.getName();
+        if(memoization > 0 && ast.isPure()) {
+            memo(ast);
+            name += "$compute";
+            newline(0);
+            newline(indent);
+        }
+
+        print(type(Environment.getType(ast.getReturnTypeName().get())), " ", name);
         print("(");
         if(!ast.getParameters().isEmpty()) {
             for(int i = 0; i < ast.getParameters().size(); i++) {
                 if(i != 0) print(", ");
-                print(Environment.getType(ast.getParameterTypeNames().get(i)).getJvmName(), " ", ast.getParameters().get(i));
+                print(type(Environment.getType(ast.getParameterTypeNames().get(i))), " ", ast.getParameters().get(i));
             }
         }
         print(") {");
 
+        // A method making self tail calls is wrapped in a labeled loop, and
+        // each such call reassigns the parameters and continues the loop. A
+        // body which can complete normally breaks out of the loop, so that it
+        // falls off the end of the method as it would unwrapped.
+        loop = hasSelfTailCall(ast, ast.getStatements()) ? ast : null;
+        if(loop != null) {
+            newline(++indent);
+            print("tailCall: while (true) {");
+        }
+
         if(!ast.getStatements().isEmpty()) {
             newline(++indent);
             for(int i = 0; i < ast.getStatements().size(); i++) {
                 if (i != 0) newline(indent);
                 print(ast.getStatements().get(i));
             }
+            if(loop != null && canComplete(ast.getStatements())) {
+                newline(indent);
+                print("break tailCall;");
+            }
             newline(--indent);
         }
 
+        if(loop != null) {
+            print("}");
+            newline(--indent);
+            loop = null;
+        }
+
+        print("}");
+
+        return null;
+    }
+
+    /**
+     * Prints the memo of a pure method and the method itself, which looks up
+     * its arguments in the memo and otherwise calls {@code name$compute}, the
+     * original body. The memo is an access-ordered LinkedHashMap evicting its
+     * least recently used entry, with counters for hits, misses and evictions,
+     * locked around each use since spawned calls may share it.
+     */
+    private void memo(Ast.Method ast) {
+        String type = type(Environment.getType(ast.getReturnTypeName().get()));
+        String boxed = box(type);
+        String prefix = ast.getName() + "$" + ast.getParameters().size();
+        String entry = "java.util.List<Object>, " + boxed;
+
+        print("private long ", prefix, "$hits = 0, ", prefix, "$misses = 0, ", prefix, "$evictions = 0;");
+        newline(indent);
+        print("private final java.util.Map<", entry, "> ", prefix, "$memo = new java.util.LinkedHashMap<", entry, ">(16, 0.75f, true) {");
+        newline(++indent);
+        print("protected boolean removeEldestEntry(java.util.Map.Entry<", entry, "> eldest) {");
+        newline(++indent);
+        print("if (size() > ", memoization, ") {");
+        newline(++indent);
+        print(prefix, "$evictions++;");
+        newline(indent);
+        print("return true;");
+        newline(--indent);
+        print("}");
+        newline(indent);
+        print("return false;");
+        newline(--indent);
+        print("}");
+        newline(--indent);
+        print("};");
+        newline(0);
+
+        newline(indent);
+        print(type, " ", ast.getName(), "(");
+        for(int i = 0; i < ast.getParameters().size(); i++) {
+            if(i != 0) print(", ");
+            print(type(Environment.getType(ast.getParameterTypeNames().get(i))), " ", ast.getParameters().get(i));
+        }
+        print(") {");
+        newline(++indent);
+        print("java.util.List<Object> ", prefix, "$key = java.util.Arrays.<Object>asList(", String.join(", ", ast.getParameters()), ");");
+        newline(indent);
+        print("synchronized (", prefix, "$memo) {");
+        newline(++indent);
+        print(boxed, " ", prefix, "$cached = ", prefix, "$memo.get(", prefix, "$key);");
+        newline(indent);
+        print("if (", prefix, "$cached != null) {");
+        newline(++indent);
+        print(prefix, "$hits++;");
+        newline(indent);
+        print("return ", prefix, "$cached;");
+        newline(--indent);
         print("}");
+        newline(indent);
+        print(prefix, "$misses++;");
+        newline(--indent);
+        print("}");
+        newline(indent);
+        print(type, " ", prefix, "$result = ", ast.getName(), "$compute(", String.join(", ", ast.getParameters()), ");");
+        newline(indent);
+        print("synchronized (", prefix, "$memo) {");
+        newline(++indent);
+        print(prefix, "$memo.put(", prefix, "$key, ", prefix, "$result);");
+        newline(--indent);
+        print("}");
+        newline(indent);
+        print("return ", prefix, "$result;");
+        newline(--indent);
+        print("}");
+    }
+
+    /**
+     * Prints the executor of spawned calls, a cached thread pool since a
+     * task may block awaiting another, the queue of tasks waited for before
+     * exiting, and for each spawned method a method starting it there and
+     * adding it to the queue. Its parameters are effectively final, so unlike the
+     * arguments at the SPAWN they can be captured by the lambda.
+     */
+    private void spawners() {
+        newline(indent);
+        print("private final java.util.concurrent.ExecutorService spawn$executor = java.util.concurrent.Executors.newCachedThreadPool();");
+        newline(indent);
+        print("private final java.util.Queue<java.util.concurrent.CompletableFuture<?>> spawn$tasks = new java.util.concurrent.ConcurrentLinkedQueue<>();");
+        newline(0);
+        for(Environment.Function function : spawned.values()) {
+            List<Environment.Type> types = function.getParameterTypes();
+            StringBuilder parameters = new StringBuilder();
+            StringBuilder arguments = new StringBuilder();
+            for(int i = 0; i < types.size(); i++) {
+                if(i != 0) {
+                    parameters.append(", ");
+                    arguments.append(", ");
+                }
+                parameters.append(type(types.get(i))).append(" $").append(i);
+                arguments.append("$").append(i);
+            }
+            String type = type(Environment.Type.handleOf(function.getReturnType()));
+            newline(indent);
+            print(type, " ", function.getJvmName(), "$spawn(", parameters, ") {");
+            newline(++indent);
+            print(type, " task = java.util.concurrent.CompletableFuture.supplyAsync(() -> ", function.getJvmName(), "(", arguments, "), spawn$executor);");
+            newline(indent);
+            print("spawn$tasks.add(task);");
+            newline(indent);
+            print("return task;");
+            newline(--indent);
+            print("}");
+            newline(0);
+        }
+    }
+
+    /**
+     * Returns the Java type of the values of a type, which for Decimals, and
+     * handles to them, depends on the arithmetic.
+     */
+    private String type(Environment.Type type) {
+        if(arithmetic.isDouble()) {
+            return type.getJvmName();
+        }
+        else if(type == Environment.Type.DECIMAL) {
+            return "java.math.BigDecimal";
+        }
+        else if(type.getResultType() == Environment.Type.DECIMAL) {
+            return "java.util.concurrent.CompletableFuture<java.math.BigDecimal>";
+        }
+        return type.getJvmName();
+    }
 
+    private static String box(String type) {
+        switch(type) {
+            case "int": return "Integer";
+            case "double": return "Double";
+            case "boolean": return "Boolean";
+            case "char": return "Character";
+            default: return type;
+        }
+    }
+
+    /**
+     * Returns the call if the expression is a call to the given method itself,
+     * otherwise {@code null}.
+     */
+    private static Ast.Expr.Function selfCall(Ast.Method method, Ast.Expr expression) {
+        while(expression instanceof Ast.Expr.Group) {
+            expression = ((Ast.Expr.Group) expression).getExpression();
+        }
+        if(expression instanceof Ast.Expr.Function) {
+            Ast.Expr.Function call = (Ast.Expr.Function) expression;
+            if(!call.getReceiver().isPresent() && call.getFunction() == method.getFunction()) {
+                return call;
+            }
+        }
         return null;
     }
 
+    private static boolean hasSelfTailCall(Ast.Method method, List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Return) {
+                if(selfCall(method, ((Ast.Stmt.Return) statement).getValue()) != null) return true;
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                if(hasSelfTailCall(method, ((Ast.Stmt.If) statement).getThenStatements())) return true;
+                if(hasSelfTailCall(method, ((Ast.Stmt.If) statement).getElseStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                if(hasSelfTailCall(method, ((Ast.Stmt.For) statement).getStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                if(hasSelfTailCall(method, ((Ast.Stmt.While) statement).getStatements())) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the generated statements can complete normally, by the
+     * rules javac checks reachability with: a RETURN never does, an IF only if
+     * either branch does, and a WHILE only if its condition is not the
+     * constant true.
+     */
+    private static boolean canComplete(List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Return) {
+                return false;
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                Ast.Stmt.If branch = (Ast.Stmt.If) statement;
+                if(!branch.getElseStatements().isEmpty() && !canComplete(branch.getThenStatements()) && !canComplete(branch.getElseStatements())) {
+                    return false;
+                }
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                Ast.Expr condition = ((Ast.Stmt.While) statement).getCondition();
+                while(condition instanceof Ast.Expr.Group) {
+                    condition = ((Ast.Expr.Group) condition).getExpression();
+                }
+                if(condition instanceof Ast.Expr.Literal && ((Ast.Expr.Literal) condition).getLiteral() == (Object) true) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public Void visit(Ast.Stmt.Expression ast) {
         print(ast.getExpression(), ";");
@@ -124,7 +534,7 @@ public final class Generator implements Ast.Visitor<Void> {
         //is there an assigned value? if so, write equals sign + value
         //write: ;
 
-        print(ast.getVariable().getType().getJvmName()," ",ast.getVariable().getJvmName());
+        print(type(ast.getVariable().getType())," ",ast.getVariable().getJvmName());
         if(ast.getValue().isPresent()) {
             print(" = ", ast.getValue().get());
         }
@@ -135,6 +545,17 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.Assignment ast) {
+        if(ast.getReceiver() instanceof Ast.Expr.Access && builders.contains(((Ast.Expr.Access) ast.getReceiver()).getVariable().getJvmName())) {
+            String name = ((Ast.Expr.Access) ast.getReceiver()).getVariable().getJvmName();
+            List<Ast.Expr> operands = new ArrayList<>();
+            appended(name, ast.getValue(), operands);
+            print(name, "$builder");
+            for(Ast.Expr operand : operands) {
+                print(".append(", operand, ")");
+            }
+            print(";");
+            return null;
+        }
         print(ast.getReceiver(), " = ", ast.getValue(),";");
 
         return null;
@@ -142,26 +563,36 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.If ast) {
-        print("if (", ast.getCondition(), ") {");
+        Instrumentation.Counts counts = profile == null ? null : profile.get(ast.getOffset());
+        boolean swapped = counts != null && counts.getKind().equals("if") && counts.getFalse() > counts.getTrue()
+                && !ast.getElseStatements().isEmpty();
+        List<Ast.Stmt> thenStatements = swapped ? ast.getElseStatements() : ast.getThenStatements();
+        List<Ast.Stmt> elseStatements = swapped ? ast.getThenStatements() : ast.getElseStatements();
+        if(swapped) {
+            print("if (!(", ast.getCondition(), ")) {");
+        }
+        else {
+            print("if (", ast.getCondition(), ") {");
+        }
 
-        if(!ast.getThenStatements().isEmpty()) {
+        if(!thenStatements.isEmpty()) {
             newline(++indent);
-            for(int i = 0; i < ast.getThenStatements().size(); i++) {
+            for(int i = 0; i < thenStatements.size(); i++) {
                 if(i != 0) { newline(indent); }
-                print(ast.getThenStatements().get(i));
+                print(thenStatements.get(i));
             }
             newline(--indent);
         }
 
         print("}");
 
-        if(!ast.getElseStatements().isEmpty()) {
+        if(!elseStatements.isEmpty()) {
             print(" else {");
             newline(++indent);
 
-            for(int i = 0; i < ast.getElseStatements().size(); i++) {
+            for(int i = 0; i < elseStatements.size(); i++) {
                 if(i != 0) newline(indent);
-                print(ast.getElseStatements().get(i));
+                print(elseStatements.get(i));
             }
 
             newline(--indent);
@@ -173,7 +604,17 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.For ast) {
-        print("for (int ", ast.getName(), " : ", ast.getValue(), ") {");
+        if(isParallel(ast)) {
+            parallel(ast);
+            return null;
+        }
+        List<String> built = build(null, ast.getStatements());
+        if(Analyzer.isRange(ast.getValue())) {
+            range(ast, ((Ast.Expr.Function) ast.getValue()).getArguments());
+        }
+        else {
+            print("for (int ", ast.getName(), " : ", ast.getValue(), ") {");
+        }
 
         if(!ast.getStatements().isEmpty()) {
             newline(++indent);
@@ -185,10 +626,466 @@ public final class Generator implements Ast.Visitor<Void> {
         }
 
         print("}");
+        built(built);
 
         return null;
     }
 
+    /**
+     * Prints the header of a counted loop over a range. The end and step are
+     * evaluated once, into locals unless they are literals, and if the body
+     * assigns the loop variable it is copied from a hidden counter instead.
+     */
+    private void range(Ast.Stmt.For ast, List<Ast.Expr> arguments) {
+        String name = ast.getName();
+        boolean copy = assigns(name, ast.getStatements());
+        String counter = copy ? name + "$" : name;
+
+        print("for (int ", counter, " = ", arguments.get(0));
+        Object end = arguments.get(1);
+        if(!(end instanceof Ast.Expr.Literal)) {
+            print(", ", name, "$end = ", end);
+            end = name + "$end";
+        }
+        Object step = arguments.size() == 3 ? arguments.get(2) : null;
+        BigInteger literal = step == null ? BigInteger.ONE : null;
+        if(step instanceof Ast.Expr.Literal) {
+            literal = (BigInteger) ((Ast.Expr.Literal) step).getLiteral();
+        }
+        else if(step != null) {
+            print(", ", name, "$step = ", step);
+            step = name + "$step";
+        }
+
+        if(literal == null) {
+            print("; ", step, " > 0 ? ", counter, " < ", end, " : ", counter, " > ", end, "; ", counter, " += ", step, ") {");
+        }
+        else {
+            print("; ", counter, literal.signum() > 0 ? " < " : " > ", end, "; ");
+            if(literal.equals(BigInteger.ONE)) {
+                print(counter, "++");
+            }
+            else {
+                print(counter, " += ", literal);
+            }
+            print(") {");
+        }
+        if(copy) {
+            newline(indent + 1);
+            print("int ", name, " = ", counter, ";");
+        }
+    }
+
+    /**
+     * Returns whether a loop found parallel by the {@link Analyzer} can be
+     * generated as a parallel stream. The range must count by one and the loop
+     * may have at most one reduction, which must be an Integer, as reordering
+     * a sum of doubles changes its rounding. Since the body becomes a lambda,
+     * every local it reads from outside must be effectively final, here taken
+     * to mean never assigned in the method. Loops with literal bounds below
+     * {@link #PARALLEL_THRESHOLD} iterations, loops in a method with self tail
+     * calls, whose parameters are reassigned, loops nested in a parallel loop
+     * and loops when memoizing, whose memos are not thread-safe, are left
+     * sequential.
+     */
+    private boolean isParallel(Ast.Stmt.For ast) {
+        if(!ast.isParallel() || parallel || loop != null || memoization > 0) {
+            return false;
+        }
+        List<Ast.Expr> arguments = ((Ast.Expr.Function) ast.getValue()).getArguments();
+        if(arguments.size() == 3 && !(arguments.get(2) instanceof Ast.Expr.Literal
+                && ((Ast.Expr.Literal) arguments.get(2)).getLiteral().equals(BigInteger.ONE))) {
+            return false;
+        }
+        if(arguments.get(0) instanceof Ast.Expr.Literal && arguments.get(1) instanceof Ast.Expr.Literal) {
+            BigInteger start = (BigInteger) ((Ast.Expr.Literal) arguments.get(0)).getLiteral();
+            BigInteger end = (BigInteger) ((Ast.Expr.Literal) arguments.get(1)).getLiteral();
+            if(end.subtract(start).compareTo(BigInteger.valueOf(PARALLEL_THRESHOLD)) < 0) {
+                return false;
+            }
+        }
+
+        Set<String> declared = new HashSet<>();
+        Set<String> reads = new HashSet<>();
+        Map<String, Environment.Type> assigned = new HashMap<>();
+        scan(ast.getStatements(), declared, reads, assigned);
+        if(ast.getReductions().size() > 1) {
+            return false;
+        }
+        for(String name : ast.getReductions().keySet()) {
+            if(assigned.get(name) != Environment.Type.INTEGER) {
+                return false;
+            }
+        }
+        for(String name : reads) {
+            if(!declared.contains(name) && !name.equals(ast.getName()) && !ast.getReductions().containsKey(name)
+                    && assigns(name, method.getStatements())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prints a parallel loop as a parallel {@code IntStream}. Without a
+     * reduction the body is run by {@code forEach}; otherwise each iteration
+     * returns its contribution to the reduction, starting from the identity of
+     * the operator, and the contributions are summed or multiplied.
+     */
+    private void parallel(Ast.Stmt.For ast) {
+        List<Ast.Expr> arguments = ((Ast.Expr.Function) ast.getValue()).getArguments();
+        String operator = null;
+        for(Map.Entry<String, String> entry : ast.getReductions().entrySet()) {
+            reduction = entry.getKey();
+            operator = entry.getValue();
+            print(reduction, " = ", reduction, " ", operator, " ");
+        }
+        print("java.util.stream.IntStream.range(", arguments.get(0), ", ", arguments.get(1), ").parallel()");
+        print(reduction == null ? ".forEach(" : ".map(", ast.getName(), " -> {");
+
+        parallel = true;
+        newline(++indent);
+        if(reduction != null) {
+            print("int ", reduction, "$ = ", operator.equals("+") ? 0 : 1, ";");
+            newline(indent);
+        }
+        for(int i = 0; i < ast.getStatements().size(); i++) {
+            if(i != 0) newline(indent);
+            print(ast.getStatements().get(i));
+        }
+        if(reduction != null) {
+            newline(indent);
+            print("return ", reduction, "$;");
+        }
+        newline(--indent);
+        parallel = false;
+
+        if(reduction == null) {
+            print("});");
+        }
+        else if(operator.equals("+")) {
+            print("}).sum();");
+        }
+        else {
+            print("}).reduce(1, (", reduction, "$l, ", reduction, "$r) -> ", reduction, "$l * ", reduction, "$r);");
+        }
+        reduction = null;
+    }
+
+    /**
+     * Collects the names of the variables the statements declare and read,
+     * and the types of those they assign.
+     */
+    private static void scan(List<Ast.Stmt> statements, Set<String> declared, Set<String> reads, Map<String, Environment.Type> assigned) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Expression) {
+                scan(((Ast.Stmt.Expression) statement).getExpression(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.Declaration) {
+                declared.add(((Ast.Stmt.Declaration) statement).getName());
+                ((Ast.Stmt.Declaration) statement).getValue().ifPresent(value -> scan(value, reads));
+            }
+            else if(statement instanceof Ast.Stmt.Assignment) {
+                Ast.Expr receiver = ((Ast.Stmt.Assignment) statement).getReceiver();
+                if(receiver instanceof Ast.Expr.Access) {
+                    assigned.put(((Ast.Expr.Access) receiver).getName(), ((Ast.Expr.Access) receiver).getVariable().getType());
+                }
+                scan(((Ast.Stmt.Assignment) statement).getValue(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                scan(((Ast.Stmt.If) statement).getCondition(), reads);
+                scan(((Ast.Stmt.If) statement).getThenStatements(), declared, reads, assigned);
+                scan(((Ast.Stmt.If) statement).getElseStatements(), declared, reads, assigned);
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                declared.add(((Ast.Stmt.For) statement).getName());
+                scan(((Ast.Stmt.For) statement).getValue(), reads);
+                scan(((Ast.Stmt.For) statement).getStatements(), declared, reads, assigned);
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                scan(((Ast.Stmt.While) statement).getCondition(), reads);
+                scan(((Ast.Stmt.While) statement).getStatements(), declared, reads, assigned);
+            }
+            else if(statement instanceof Ast.Stmt.Return) {
+                scan(((Ast.Stmt.Return) statement).getValue(), reads);
+            }
+        }
+    }
+
+    private static void scan(Ast.Expr expression, Set<String> reads) {
+        if(expression instanceof Ast.Expr.Group) {
+            scan(((Ast.Expr.Group) expression).getExpression(), reads);
+        }
+        else if(expression instanceof Ast.Expr.Binary) {
+            scan(((Ast.Expr.Binary) expression).getLeft(), reads);
+            scan(((Ast.Expr.Binary) expression).getRight(), reads);
+        }
+        else if(expression instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expression;
+            if(access.getReceiver().isPresent()) {
+                scan(access.getReceiver().get(), reads);
+            }
+            else {
+                reads.add(access.getName());
+            }
+        }
+        else if(expression instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expression;
+            function.getReceiver().ifPresent(receiver -> scan(receiver, reads));
+            for(Ast.Expr argument : function.getArguments()) {
+                scan(argument, reads);
+            }
+        }
+    }
+
+    /**
+     * Returns whether any of the statements spawns a call.
+     */
+    private static boolean spawns(List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Expression) {
+                if(spawns(((Ast.Stmt.Expression) statement).getExpression())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.Declaration) {
+                Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) statement;
+                if(declaration.getValue().isPresent() && spawns(declaration.getValue().get())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.Assignment) {
+                if(spawns(((Ast.Stmt.Assignment) statement).getReceiver())) return true;
+                if(spawns(((Ast.Stmt.Assignment) statement).getValue())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                if(spawns(((Ast.Stmt.If) statement).getCondition())) return true;
+                if(spawns(((Ast.Stmt.If) statement).getThenStatements())) return true;
+                if(spawns(((Ast.Stmt.If) statement).getElseStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                if(spawns(((Ast.Stmt.For) statement).getValue())) return true;
+                if(spawns(((Ast.Stmt.For) statement).getStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                if(spawns(((Ast.Stmt.While) statement).getCondition())) return true;
+                if(spawns(((Ast.Stmt.While) statement).getStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.Return) {
+                if(spawns(((Ast.Stmt.Return) statement).getValue())) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean spawns(Ast.Expr expression) {
+        if(expression instanceof Ast.Expr.Spawn) {
+            return true;
+        }
+        else if(expression instanceof Ast.Expr.Await) {
+            return spawns(((Ast.Expr.Await) expression).getValue());
+        }
+        else if(expression instanceof Ast.Expr.Group) {
+            return spawns(((Ast.Expr.Group) expression).getExpression());
+        }
+        else if(expression instanceof Ast.Expr.Binary) {
+            return spawns(((Ast.Expr.Binary) expression).getLeft()) || spawns(((Ast.Expr.Binary) expression).getRight());
+        }
+        else if(expression instanceof Ast.Expr.Access) {
+            return ((Ast.Expr.Access) expression).getReceiver().isPresent() && spawns(((Ast.Expr.Access) expression).getReceiver().get());
+        }
+        else if(expression instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expression;
+            if(function.getReceiver().isPresent() && spawns(function.getReceiver().get())) return true;
+            for(Ast.Expr argument : function.getArguments()) {
+                if(spawns(argument)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts a StringBuilder for every String local a loop only appends to,
+     * as in {@code s = s + a + b}, reading it nowhere else, including its
+     * condition, so that the loop builds the String in linear rather than
+     * quadratic time. Returns the variables, to be passed to
+     * {@link #built(List)} once the loop is generated.
+     */
+    private List<String> build(Ast.Expr condition, List<Ast.Stmt> statements) {
+        Map<String, Integer> appends = new LinkedHashMap<>();
+        Map<String, Integer> reads = new HashMap<>();
+        Set<String> declared = new HashSet<>();
+        accumulations(statements, appends, declared);
+        if(condition != null) {
+            reads(condition, reads);
+        }
+        reads(statements, reads);
+
+        List<String> built = new ArrayList<>();
+        for(Map.Entry<String, Integer> append : appends.entrySet()) {
+            String name = append.getKey();
+            if(append.getValue() > 0 && append.getValue().equals(reads.get(name))
+                    && !fields.contains(name) && !declared.contains(name) && !builders.contains(name)) {
+                built.add(name);
+            }
+        }
+        for(String name : built) {
+            builders.add(name);
+            print("StringBuilder ", name, "$builder = new StringBuilder(", name, ");");
+            newline(indent);
+        }
+        return built;
+    }
+
+    /**
+     * Assigns every String built by a loop which has been generated.
+     */
+    private void built(List<String> built) {
+        for(String name : built) {
+            builders.remove(name);
+            newline(indent);
+            print(name, " = ", name, "$builder.toString();");
+        }
+    }
+
+    /**
+     * Counts the assignments to each variable which append to it, marking
+     * those assigned anything else with -1, and collects the variables
+     * declared.
+     */
+    private static void accumulations(List<Ast.Stmt> statements, Map<String, Integer> appends, Set<String> declared) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Declaration) {
+                declared.add(((Ast.Stmt.Declaration) statement).getVariable().getJvmName());
+            }
+            else if(statement instanceof Ast.Stmt.Assignment) {
+                Ast.Expr receiver = ((Ast.Stmt.Assignment) statement).getReceiver();
+                if(receiver instanceof Ast.Expr.Access && !((Ast.Expr.Access) receiver).getReceiver().isPresent()) {
+                    String name = ((Ast.Expr.Access) receiver).getVariable().getJvmName();
+                    boolean append = appended(name, ((Ast.Stmt.Assignment) statement).getValue(), new ArrayList<>());
+                    int count = appends.getOrDefault(name, 0);
+                    appends.put(name, count < 0 || !append ? -1 : count + 1);
+                }
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                accumulations(((Ast.Stmt.If) statement).getThenStatements(), appends, declared);
+                accumulations(((Ast.Stmt.If) statement).getElseStatements(), appends, declared);
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                accumulations(((Ast.Stmt.For) statement).getStatements(), appends, declared);
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                accumulations(((Ast.Stmt.While) statement).getStatements(), appends, declared);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the value appends to the variable, as in
+     * {@code s + a + b}, collecting what it appends in order.
+     */
+    private static boolean appended(String name, Ast.Expr value, List<Ast.Expr> operands) {
+        if(value instanceof Ast.Expr.Access && !((Ast.Expr.Access) value).getReceiver().isPresent()) {
+            return ((Ast.Expr.Access) value).getVariable().getJvmName().equals(name)
+                    && value.getType() == Environment.Type.STRING;
+        }
+        if(!(value instanceof Ast.Expr.Binary) || !((Ast.Expr.Binary) value).getOperator().equals("+")
+                || value.getType() != Environment.Type.STRING) {
+            return false;
+        }
+        if(!appended(name, ((Ast.Expr.Binary) value).getLeft(), operands)) {
+            return false;
+        }
+        operands.add(((Ast.Expr.Binary) value).getRight());
+        return true;
+    }
+
+    /**
+     * Counts the reads of each variable in the statements.
+     */
+    private static void reads(List<Ast.Stmt> statements, Map<String, Integer> reads) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Expression) {
+                reads(((Ast.Stmt.Expression) statement).getExpression(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.Declaration) {
+                ((Ast.Stmt.Declaration) statement).getValue().ifPresent(value -> reads(value, reads));
+            }
+            else if(statement instanceof Ast.Stmt.Assignment) {
+                Ast.Expr receiver = ((Ast.Stmt.Assignment) statement).getReceiver();
+                if(receiver instanceof Ast.Expr.Access) {
+                    ((Ast.Expr.Access) receiver).getReceiver().ifPresent(object -> reads(object, reads));
+                }
+                reads(((Ast.Stmt.Assignment) statement).getValue(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                reads(((Ast.Stmt.If) statement).getCondition(), reads);
+                reads(((Ast.Stmt.If) statement).getThenStatements(), reads);
+                reads(((Ast.Stmt.If) statement).getElseStatements(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                reads(((Ast.Stmt.For) statement).getValue(), reads);
+                reads(((Ast.Stmt.For) statement).getStatements(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                reads(((Ast.Stmt.While) statement).getCondition(), reads);
+                reads(((Ast.Stmt.While) statement).getStatements(), reads);
+            }
+            else if(statement instanceof Ast.Stmt.Return) {
+                reads(((Ast.Stmt.Return) statement).getValue(), reads);
+            }
+        }
+    }
+
+    private static void reads(Ast.Expr expression, Map<String, Integer> reads) {
+        if(expression instanceof Ast.Expr.Group) {
+            reads(((Ast.Expr.Group) expression).getExpression(), reads);
+        }
+        else if(expression instanceof Ast.Expr.Binary) {
+            reads(((Ast.Expr.Binary) expression).getLeft(), reads);
+            reads(((Ast.Expr.Binary) expression).getRight(), reads);
+        }
+        else if(expression instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) expression;
+            if(access.getReceiver().isPresent()) {
+                reads(access.getReceiver().get(), reads);
+            }
+            else {
+                reads.merge(access.getVariable().getJvmName(), 1, Integer::sum);
+            }
+        }
+        else if(expression instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) expression;
+            function.getReceiver().ifPresent(receiver -> reads(receiver, reads));
+            for(Ast.Expr argument : function.getArguments()) {
+                reads(argument, reads);
+            }
+        }
+        else if(expression instanceof Ast.Expr.Spawn) {
+            reads(((Ast.Expr.Spawn) expression).getCall(), reads);
+        }
+        else if(expression instanceof Ast.Expr.Await) {
+            reads(((Ast.Expr.Await) expression).getValue(), reads);
+        }
+    }
+
+    private static boolean assigns(String name, List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(statement instanceof Ast.Stmt.Assignment) {
+                Ast.Expr receiver = ((Ast.Stmt.Assignment) statement).getReceiver();
+                if(receiver instanceof Ast.Expr.Access && !((Ast.Expr.Access) receiver).getReceiver().isPresent()
+                        && ((Ast.Expr.Access) receiver).getName().equals(name)) return true;
+            }
+            else if(statement instanceof Ast.Stmt.If) {
+                if(assigns(name, ((Ast.Stmt.If) statement).getThenStatements())) return true;
+                if(assigns(name, ((Ast.Stmt.If) statement).getElseStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.For) {
+                if(assigns(name, ((Ast.Stmt.For) statement).getStatements())) return true;
+            }
+            else if(statement instanceof Ast.Stmt.While) {
+                if(assigns(name, ((Ast.Stmt.While) statement).getStatements())) return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Void visit(Ast.Stmt.While ast) {
         //print the while structure, including condition
@@ -201,6 +1098,7 @@ public final class Generator implements Ast.Visitor<Void> {
         //setup the next line }
         //close the while
 
+        List<String> built = build(ast.getCondition(), ast.getStatements());
         print("while (", ast.getCondition(), ") {");
 
         if(!ast.getStatements().isEmpty()) {
@@ -213,14 +1111,41 @@ public final class Generator implements Ast.Visitor<Void> {
         }
 
         print("}");
-
+        built(built);
 
         return null;
     }
 
     @Override
     public Void visit(Ast.Stmt.Return ast) {
-        print("return ", ast.getValue(), ";");
+        Ast.Expr.Function call = loop != null ? selfCall(loop, ast.getValue()) : null;
+        if(call == null) {
+            print("return ", ast.getValue(), ";");
+            return null;
+        }
+
+        // The arguments are evaluated into temporaries before any parameter is
+        // reassigned, since they may refer to the parameters themselves.
+        List<String> parameters = loop.getParameters();
+        print("{");
+        newline(++indent);
+        if(parameters.size() == 1) {
+            print(parameters.get(0), " = ", call.getArguments().get(0), ";");
+            newline(indent);
+        }
+        else {
+            for(int i = 0; i < parameters.size(); i++) {
+                print(type(Environment.getType(loop.getParameterTypeNames().get(i))), " ", parameters.get(i), "$ = ", call.getArguments().get(i), ";");
+                newline(indent);
+            }
+            for(int i = 0; i < parameters.size(); i++) {
+                print(parameters.get(i), " = ", parameters.get(i), "$;");
+                newline(indent);
+            }
+        }
+        print("continue tailCall;");
+        newline(--indent);
+        print("}");
 
         return null;
     }
@@ -244,7 +1169,12 @@ public final class Generator implements Ast.Visitor<Void> {
             print(ast.getLiteral());
         }
         else if(ast.getType() == Environment.Type.DECIMAL) {
-            print(ast.getLiteral()); //keep in mind precision when writing tests
+            if(arithmetic.isDouble()) {
+                print(ast.getLiteral()); //keep in mind precision when writing tests
+            }
+            else {
+                print("new java.math.BigDecimal(\"", ast.getLiteral(), "\")");
+            }
         }
 
         return null;
@@ -264,21 +1194,112 @@ public final class Generator implements Ast.Visitor<Void> {
         if(operator.equals("AND")) operator = "&&";
         else if (operator.equals("OR")) operator = "||";
 
+        if(!arithmetic.isDouble() && ast.getLeft().getType() == Environment.Type.DECIMAL && ast.getRight().getType() == Environment.Type.DECIMAL) {
+            decimal(ast);
+            return null;
+        }
         print(ast.getLeft(), " ", operator, " ", ast.getRight());
 
         return null;
     }
 
+    /**
+     * Prints an operation on BigDecimals as the method call computing it.
+     * Equality is {@code equals}, which like the interpreter tells apart
+     * equal values of different scales, while the relational operators
+     * compare values.
+     */
+    private void decimal(Ast.Expr.Binary ast) {
+        String context = arithmetic.getContext() == null ? "" : ", decimal$context";
+        switch(ast.getOperator()) {
+            case "+":
+                print(ast.getLeft(), ".add(", ast.getRight(), context, ")");
+                break;
+            case "-":
+                print(ast.getLeft(), ".subtract(", ast.getRight(), context, ")");
+                break;
+            case "*":
+                print(ast.getLeft(), ".multiply(", ast.getRight(), context, ")");
+                break;
+            case "/":
+                print(ast.getLeft(), ".divide(", ast.getRight(), arithmetic.getContext() == null ? ", 1, java.math.RoundingMode.HALF_EVEN" : context, ")");
+                break;
+            case "==":
+                print(ast.getLeft(), ".equals(", ast.getRight(), ")");
+                break;
+            case "!=":
+                print("!", ast.getLeft(), ".equals(", ast.getRight(), ")");
+                break;
+            default:
+                print(ast.getLeft(), ".compareTo(", ast.getRight(), ") ", ast.getOperator(), " 0");
+        }
+    }
+
     @Override
     public Void visit(Ast.Expr.Access ast) {
         if(ast.getReceiver().isPresent()) { print(ast.getReceiver().get(), ".");}
+        else if(inlined != null && inlined.containsKey(ast.getName())) {
+            // The argument is generated as in the caller, which is where its
+            // variables are.
+            Map<String, Ast.Expr> arguments = inlined;
+            inlined = null;
+            try {
+                print(arguments.get(ast.getName()));
+            }
+            finally {
+                inlined = arguments;
+            }
+            return null;
+        }
+        else if(ast.getName().equals(reduction)) {
+            print(reduction, "$");
+            return null;
+        }
         print(ast.getVariable().getJvmName());
 
         return null;
     }
 
+    @Override
+    public Void visit(Ast.Expr.Spawn ast) {
+        Ast.Expr.Function call = ast.getCall();
+        spawned.putIfAbsent(call.getName() + "/" + call.getArguments().size(), call.getFunction());
+        print(call.getFunction().getJvmName(), "$spawn(");
+        for(int i = 0; i < call.getArguments().size(); i++) {
+            if(i != 0) print(", ");
+            print(call.getArguments().get(i));
+        }
+        print(")");
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Await ast) {
+        print(ast.getValue(), ".join()");
+
+        return null;
+    }
+
     @Override
     public Void visit(Ast.Expr.Function ast) {
+        if(Analyzer.isRange(ast)) {
+            throw new RuntimeException("The builtin range is only supported as the value of a FOR loop.");
+        }
+        Ast.Method callee = inlinable(ast);
+        if(callee != null) {
+            inlined = new HashMap<>();
+            for(int i = 0; i < callee.getParameters().size(); i++) {
+                inlined.put(callee.getParameters().get(i), ast.getArguments().get(i));
+            }
+            try {
+                print("(", ((Ast.Stmt.Return) callee.getStatements().get(0)).getValue(), ")");
+            }
+            finally {
+                inlined = null;
+            }
+            return null;
+        }
         if(ast.getReceiver().isPresent()){ print(ast.getReceiver().get(), ".");}
         print(ast.getFunction().getJvmName(), "(");
         if(!ast.getArguments().isEmpty()) {
@@ -292,4 +1313,45 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Returns the method to inline in place of a call, or {@code null} if the
+     * call is made as usual. The call must be made from a statement which ran
+     * at least {@link #INLINE_THRESHOLD} times in the profile, with literals
+     * or variables as arguments, so that substituting them for the parameters
+     * neither repeats nor reorders any work, and must not itself be within an
+     * inlined call. The method must be pure, not memoized and not the one
+     * being generated, and consist of a single RETURN of an expression which
+     * only reads its parameters and has the method's return type.
+     */
+    private Ast.Method inlinable(Ast.Expr.Function ast) {
+        if(profile == null || inlined != null || statement == null || ast.getReceiver().isPresent()) {
+            return null;
+        }
+        Instrumentation.Counts counts = profile.get(statement.getOffset());
+        if(counts == null || counts.getExecutions() < INLINE_THRESHOLD) {
+            return null;
+        }
+        Ast.Method callee = methods.get(ast.getFunction());
+        if(callee == null || callee == method || !callee.isPure() || memoization > 0
+                || callee.getStatements().size() != 1 || !(callee.getStatements().get(0) instanceof Ast.Stmt.Return)) {
+            return null;
+        }
+        Ast.Expr value = ((Ast.Stmt.Return) callee.getStatements().get(0)).getValue();
+        if(value.getType() != Environment.getType(callee.getReturnTypeName().get())) {
+            return null;
+        }
+        Set<String> reads = new HashSet<>();
+        scan(value, reads);
+        if(!callee.getParameters().containsAll(reads)) {
+            return null;
+        }
+        for(Ast.Expr argument : ast.getArguments()) {
+            boolean variable = argument instanceof Ast.Expr.Access && !((Ast.Expr.Access) argument).getReceiver().isPresent();
+            if(!variable && !(argument instanceof Ast.Expr.Literal)) {
+                return null;
+            }
+        }
+        return callee;
+    }
+
 }
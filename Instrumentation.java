@@ -0,0 +1,214 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts how many times the {@link Interpreter} runs each statement, how many
+ * times each IF condition is true and false, and how many iterations each
+ * WHILE and FOR loop runs. Only an {@link Interpreter.Monitored} given an
+ * instrumentation (see {@link Interpreter.Monitored#setInstrumentation})
+ * counts; a plain interpreter visits statements directly and checks for
+ * nothing.
+ *
+ * Statements are keyed by their source offset (see {@link Ast#getOffset()}),
+ * which is distinct for every statement parsed from a source. The counts may
+ * be updated by many threads, so the interpreters running the chunks of a
+ * parallel loop and spawned calls share the instrumentation of the one which
+ * started them. Code compiled by tiering is not counted.
+ */
+public final class Instrumentation {
+
+    private static final Pattern STATEMENT = Pattern.compile("\"(-?\\d+)\":\\s*\\{([^}]*)}");
+    private static final Pattern COUNT = Pattern.compile("\"(\\w+)\":\\s*\"?(\\w+)\"?");
+
+    private final Map<Integer, Counts> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the counts written by {@link #write}, as saved by an earlier run,
+     * for instance to guide the {@link Generator}.
+     */
+    public static Instrumentation read(CharSequence json) {
+        Instrumentation instrumentation = new Instrumentation();
+        Matcher statement = STATEMENT.matcher(json);
+        while(statement.find()) {
+            Map<String, String> fields = new HashMap<>();
+            Matcher count = COUNT.matcher(statement.group(2));
+            while(count.find()) {
+                fields.put(count.group(1), count.group(2));
+            }
+            if(!fields.containsKey("kind")) {
+                throw new RuntimeException("Expected the kind of the statement at " + statement.group(1) + ".");
+            }
+            Counts counts = new Counts(fields.get("kind"));
+            counts.executions.add(Long.parseLong(fields.getOrDefault("executions", "0")));
+            counts.taken.add(Long.parseLong(fields.getOrDefault("true", "0")));
+            counts.skipped.add(Long.parseLong(fields.getOrDefault("false", "0")));
+            counts.iterations.add(Long.parseLong(fields.getOrDefault("iterations", "0")));
+            instrumentation.counts.put(Integer.parseInt(statement.group(1)), counts);
+        }
+        return instrumentation;
+    }
+
+    /**
+     * Returns the counts of the statement at the given offset, or
+     * {@code null} if it has not run.
+     */
+    public Counts get(int offset) {
+        return counts.get(offset);
+    }
+
+    /**
+     * Returns the counts of every statement which has run, by offset.
+     */
+    public Map<Integer, Counts> getCounts() {
+        return new TreeMap<>(counts);
+    }
+
+    /**
+     * Writes the counts as a JSON object keyed by offset, in order, as in
+     * <pre>
+     * {
+     *   "40": {"kind": "if", "executions": 20, "true": 5, "false": 15},
+     *   "96": {"kind": "while", "executions": 1, "iterations": 20}
+     * }
+     * </pre>
+     * Branch counts are only written for IF statements and iteration counts
+     * only for loops.
+     */
+    public void write(Appendable out) {
+        try {
+            out.append('{');
+            boolean first = true;
+            for(Map.Entry<Integer, Counts> entry : getCounts().entrySet()) {
+                Counts counts = entry.getValue();
+                out.append(first ? "\n" : ",\n");
+                out.append("  \"").append(String.valueOf(entry.getKey())).append("\": {\"kind\": \"").append(counts.kind)
+                        .append("\", \"executions\": ").append(String.valueOf(counts.getExecutions()));
+                if(counts.kind.equals("if")) {
+                    out.append(", \"true\": ").append(String.valueOf(counts.getTrue()))
+                            .append(", \"false\": ").append(String.valueOf(counts.getFalse()));
+                }
+                else if(counts.kind.equals("while") || counts.kind.equals("for")) {
+                    out.append(", \"iterations\": ").append(String.valueOf(counts.getIterations()));
+                }
+                out.append('}');
+                first = false;
+            }
+            out.append(first ? "}\n" : "\n}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        write(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Called by the interpreter as it starts running a statement.
+     */
+    void statement(Ast.Stmt ast) {
+        counts(ast).executions.increment();
+    }
+
+    /**
+     * Called by the interpreter once it has evaluated the condition of an IF.
+     */
+    void branch(Ast.Stmt.If ast, boolean taken) {
+        Counts counts = counts(ast);
+        (taken ? counts.taken : counts.skipped).increment();
+    }
+
+    /**
+     * Called by the interpreter as it starts an iteration of a loop.
+     */
+    void iteration(Ast.Stmt ast) {
+        counts(ast).iterations.increment();
+    }
+
+    private Counts counts(Ast.Stmt ast) {
+        Counts found = counts.get(ast.getOffset());
+        return found != null ? found : counts.computeIfAbsent(ast.getOffset(), offset -> new Counts(kind(ast)));
+    }
+
+    private static String kind(Ast.Stmt ast) {
+        if(ast instanceof Ast.Stmt.Expression) {
+            return "expression";
+        } else if(ast instanceof Ast.Stmt.Declaration) {
+            return "declaration";
+        } else if(ast instanceof Ast.Stmt.Assignment) {
+            return "assignment";
+        } else if(ast instanceof Ast.Stmt.If) {
+            return "if";
+        } else if(ast instanceof Ast.Stmt.For) {
+            return "for";
+        } else if(ast instanceof Ast.Stmt.While) {
+            return "while";
+        } else {
+            return "return";
+        }
+    }
+
+    /**
+     * The counts of a single statement.
+     */
+    public static final class Counts {
+
+        private final String kind;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder taken = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder iterations = new LongAdder();
+
+        private Counts(String kind) {
+            this.kind = kind;
+        }
+
+        /**
+         * Returns the kind of the statement, as {@code if}, {@code while},
+         * {@code assignment} and so on.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        /**
+         * Returns the number of times the condition of an IF was true.
+         */
+        public long getTrue() {
+            return taken.sum();
+        }
+
+        /**
+         * Returns the number of times the condition of an IF was false.
+         */
+        public long getFalse() {
+            return skipped.sum();
+        }
+
+        /**
+         * Returns the number of iterations of a loop, over all of its
+         * executions.
+         */
+        public long getIterations() {
+            return iterations.sum();
+        }
+
+    }
+
+}
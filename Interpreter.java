@@ -2,45 +2,388 @@ package plc.project;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
+/**
+ * Walks the AST, keeping the state of a single execution: its scopes, the
+ * method currently running and its output. An interpreter runs one execution
+ * at a time, while a {@link Program} may be run by any number of interpreters
+ * concurrently.
+ */
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
+    /**
+     * The least number of iterations for which a parallel loop (see
+     * {@link Dependence}) is split across threads, and the least number each
+     * thread is given.
+     */
+    private static final long PARALLEL_THRESHOLD = 1 << 12;
+    private static final long PARALLEL_CHUNK = 1 << 10;
+
+    /**
+     * Runs the calls started by {@code SPAWN}: on virtual threads where the
+     * runtime provides them, and otherwise on daemon threads created as
+     * needed, since a task may block awaiting another.
+     */
+    private static final ExecutorService SPAWNER = spawner();
+
+    /**
+     * The value of a lazy field whose initializer has not run yet.
+     */
+    private static final Environment.PlcObject UNINITIALIZED = new Environment.PlcObject(Environment.Type.NIL, new Scope(null), new Object());
+
     private Scope scope = new Scope(null);
 
+    /**
+     * The outermost scope of this interpreter. Functions are only defined here
+     * (or in its parents), so it keys the call-site caches for global calls.
+     */
+    private final Scope globals;
+
+    private final Return returning = new Return();
+
+    /**
+     * Where {@code print} writes, flushed once the execution finishes.
+     */
+    private final Output out;
+
+    /**
+     * The tiering policy, or {@code null} if every method stays interpreted.
+     */
+    private final Tiering tiering;
+
+    /**
+     * The limits of each execution, or {@code null} if unlimited.
+     */
+    private final Budget budget;
+
+    /**
+     * The counters of the method currently being interpreted, if tiering.
+     */
+    private Tiering.Counters running = null;
+
+    /**
+     * The source being executed, and the program compiled from it with its
+     * function table, or {@code null} if the interpreter was given an
+     * {@link Ast.Source} directly. Both are replaced when the source is
+     * reloaded, possibly by another thread, the program and its table
+     * together, so a call never sees a table which is not yet filled.
+     */
+    private volatile Ast.Source source = null;
+    private volatile Resolved resolved = null;
+
+    /**
+     * The capacity of the memo of each pure method, or zero if calls are not
+     * memoized, and the memos created so far.
+     */
+    private int memoization = 0;
+    private final List<Memo> memos = new CopyOnWriteArrayList<>();
+
+    /**
+     * The tasks spawned during the execution, shared with the interpreters
+     * running them, which the execution waits for before it finishes.
+     */
+    private Queue<CompletableFuture<Environment.PlcObject>> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The profiler this interpreter publishes its methods to, or {@code null}
+     * if it is not being profiled. Only a {@link Monitored} interpreter
+     * publishes its statements as well.
+     */
+    private Profiler profiler = null;
+
+    /**
+     * The lazy fields by their variables, once defined, or {@code null} if
+     * fields are initialized at startup. Shared with forked interpreters.
+     */
+    private Map<Environment.Variable, Ast.Field> lazy = null;
+
+    /**
+     * How Decimals are represented and computed.
+     */
+    private Arithmetic arithmetic = Arithmetic.DEFAULT;
+
     public Interpreter(Scope parent) {
+        this(parent, null);
+    }
+
+    /**
+     * Creates an interpreter which compiles hot methods and loops to
+     * {@link Node}s as described by {@link Tiering}.
+     */
+    public Interpreter(Scope parent, Tiering tiering) {
+        this(parent, tiering, Output.of(System.out));
+    }
+
+    /**
+     * Creates an interpreter whose {@code print} writes to the given output.
+     */
+    public Interpreter(Scope parent, Tiering tiering, Output out) {
+        this(parent, tiering, out, null);
+    }
+
+    /**
+     * Creates an interpreter whose executions are limited by the given
+     * budget. Compiled code does not spend steps, so methods and loops are
+     * never tiered up while there is a budget.
+     */
+    public Interpreter(Scope parent, Tiering tiering, Output out, Budget budget) {
+        this.tiering = budget == null ? tiering : null;
+        this.budget = budget;
+        this.out = out;
         scope = new Scope(parent);
+        globals = scope;
         scope.defineFunction("print", 1, args -> {
-            System.out.println(args.get(0).getValue());
+            if(budget != null) {
+                budget.allocate(Budget.sizeOf(args.get(0).getValue()));
+            }
+            // Spawned tasks print to the same output, a line at a time.
+            synchronized(out) {
+                out.println(args.get(0).getValue());
+            }
             return Environment.NIL;
         });
+        scope.defineFunction("range", 2, args -> Environment.create(new Range(
+                requireType(BigInteger.class, args.get(0)), requireType(BigInteger.class, args.get(1)))));
+        scope.defineFunction("range", 3, args -> Environment.create(new Range(
+                requireType(BigInteger.class, args.get(0)), requireType(BigInteger.class, args.get(1)), requireType(BigInteger.class, args.get(2)))));
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    public Output getOutput() {
+        return out;
+    }
+
+    /**
+     * Memoizes calls to the pure methods (see {@link Purity}) of the programs
+     * executed from now on, keeping the results of up to {@code capacity}
+     * distinct arguments per method. Zero turns memoization off.
+     */
+    public void setMemoization(int capacity) {
+        memoization = capacity;
+    }
+
+    /**
+     * Initializes the fields of the programs executed from now on on their
+     * first read, if {@code lazy} is set, rather than at startup. Only the
+     * fields the {@link Analyzer} found lazy (see {@link Ast.Field#isLazy()})
+     * are deferred; the rest are still initialized in order. Code tiered up
+     * reads fields directly, so when tiering every field is initialized at
+     * startup, and a field never read is left uninitialized in the scope.
+     */
+    public void setLazyFields(boolean lazy) {
+        this.lazy = lazy && tiering == null ? new IdentityHashMap<>() : null;
+    }
+
+    /**
+     * Computes the Decimals of the programs executed from now on with the
+     * given arithmetic, which should be the one they were analyzed with.
+     */
+    public void setArithmetic(Arithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+    }
+
+    /**
+     * Returns the memo of every memoized method, with its counters.
+     */
+    public List<Memo> getMemos() {
+        return memos;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
-        for(int i = 0; i < ast.getFields().size(); i++) {
-            visit(ast.getFields().get(i));
+        synchronized(this) {
+            initialize(ast, null);
+        }
+
+        if(budget != null) {
+            budget.start();
+            budget.allocate(Budget.sizeOf(globals));
+        }
+        try {
+            return scope.lookupFunction("main", 0).invoke();
+        } finally {
+            settle();
+            out.flush();
+        }
+    }
+
+    /**
+     * Executes a compiled program, calling functions through its function
+     * table rather than the call-site caches shared by every execution of the
+     * same AST.
+     */
+    public Environment.PlcObject execute(Program program) {
+        return execute(program, null);
+    }
+
+    /**
+     * Executes a compiled program, restoring its fields from the snapshot, if
+     * there is one, rather than initializing them.
+     */
+    public Environment.PlcObject execute(Program program, Snapshot snapshot) {
+        if(snapshot != null && !snapshot.getHash().equals(program.getHash())) {
+            throw new RuntimeException("The snapshot was taken of another source.");
+        }
+        if(snapshot != null && arithmetic != Arithmetic.DEFAULT) {
+            throw new RuntimeException("Snapshots are taken with the default arithmetic.");
+        }
+        // Not reloaded until the program is set up.
+        Resolved resolved;
+        synchronized(this) {
+            initialize(program.getSource(), snapshot);
+            resolved = resolve(program);
+        }
+        if(budget != null) {
+            budget.start();
+            budget.allocate(Budget.sizeOf(globals));
+        }
+        try {
+            return resolved.functions[program.getMain()].invoke();
+        } finally {
+            settle();
+            out.flush();
+        }
+    }
+
+    /**
+     * Defines the fields of the source, restoring them from the snapshot if
+     * there is one and otherwise evaluating their initializers, and then its
+     * methods.
+     */
+    void initialize(Ast.Source ast, Snapshot snapshot) {
+        source = ast;
+        if(snapshot != null) {
+            snapshot.restore(scope);
+        }
+        else {
+            for(int i = 0; i < ast.getFields().size(); i++) {
+                visit(ast.getFields().get(i));
+            }
         }
         for(int i = 0; i < ast.getMethods().size(); i++) {
             visit(ast.getMethods().get(i));
         }
+    }
 
-        ArrayList<Environment.PlcObject> args = new ArrayList<>();
-        return scope.lookupFunction("main", 0).invoke(args);
+    /**
+     * Reloads the methods of the source being executed from a changed version
+     * of it, while it runs, as {@link #reload(String, Scope)} with no parent.
+     */
+    public void reload(String input) {
+        reload(input, null);
+    }
+
+    /**
+     * Reloads the methods of the source being executed from a changed version
+     * of it, analyzed against the given parent scope, while it runs on
+     * another thread. The fields and their values are kept, so the fields
+     * must be declared exactly as before, as must the parameter and return
+     * types of every method kept. Each changed or added method replaces its
+     * binding in the global scope atomically, and every call made from then
+     * on calls it, while calls already running, including {@code main},
+     * finish in the old method. Methods removed from the source are kept, as
+     * running code may still call them. Spawned tasks and parallel loops
+     * already started keep the methods they started with.
+     *
+     * If the input fails to parse or analyze, or changes a field or a
+     * signature, nothing is reloaded and the exception is thrown.
+     */
+    public synchronized void reload(String input, Scope parent) {
+        Ast.Source current = source;
+        if(current == null) {
+            throw new RuntimeException("There is no source being executed to reload.");
+        }
+        Ast.Source changed = new Parser(new Lexer(input).lex()).parseSource();
+        Analyzer analyzer = new Analyzer(parent);
+        analyzer.setArithmetic(arithmetic);
+        analyzer.visit(changed);
+
+        if(changed.getFields().size() != current.getFields().size()) {
+            throw new RuntimeException("The fields of a reloaded source must be unchanged.");
+        }
+        for(int i = 0; i < changed.getFields().size(); i++) {
+            Ast.Field before = current.getFields().get(i);
+            Ast.Field after = changed.getFields().get(i);
+            if(!before.getName().equals(after.getName()) || !before.getTypeName().equals(after.getTypeName())) {
+                throw new RuntimeException("The field " + before.getName() + " of a reloaded source must be unchanged.");
+            }
+        }
+        Map<String, Ast.Method> removed = new LinkedHashMap<>();
+        for(Ast.Method method : current.getMethods()) {
+            removed.put(method.getName() + "/" + method.getParameters().size(), method);
+        }
+        for(Ast.Method method : changed.getMethods()) {
+            Ast.Method before = removed.get(method.getName() + "/" + method.getParameters().size());
+            if(before != null && (!before.getParameterTypeNames().equals(method.getParameterTypeNames())
+                    || !before.getReturnTypeName().equals(method.getReturnTypeName()))) {
+                throw new RuntimeException("The signature of the method " + method.getName() + "/" + method.getParameters().size() + " of a reloaded source must be unchanged.");
+            }
+        }
+
+        List<Ast.Method> methods = new ArrayList<>(changed.getMethods());
+        for(Ast.Method method : changed.getMethods()) {
+            String name = method.getName();
+            int arity = method.getParameters().size();
+            if(removed.remove(name + "/" + arity) != null) {
+                globals.replaceFunction(name, arity, body(method));
+            }
+            else {
+                globals.defineFunction(name, arity, body(method));
+            }
+        }
+        methods.addAll(removed.values());
+
+        // The fields keep their variables and initializers, which may still
+        // be run by a lazy read, so the merged source keeps the old ones.
+        Ast.Source merged = new Ast.Source(current.getFields(), methods);
+        if(resolved != null) {
+            source = merged;
+            resolve(new Program(merged, Program.hash(input), resolved.program));
+        }
+        else {
+            source = merged;
+        }
+    }
+
+    /**
+     * Fills a function table for the program from the global scope, and only
+     * then publishes the two together.
+     */
+    private synchronized Resolved resolve(Program program) {
+        Environment.Function[] functions = new Environment.Function[program.getFunctionCount()];
+        for(int i = 0; i < functions.length; i++) {
+            functions[i] = globals.lookupFunction(program.getFunctionName(i), program.getFunctionArity(i));
+        }
+        resolved = new Resolved(program, functions);
+        return resolved;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Field ast) {
-        if(ast.getValue().isPresent()) {
+        if(lazy != null && ast.isLazy()) {
+            lazy.put(scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.ANY, UNINITIALIZED), ast);
+        }
+        else if(ast.getValue().isPresent()) {
             scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
         }
         else {
@@ -59,29 +402,24 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             return Environment.NIL;
         });
         */
-        Function<List<Environment.PlcObject>, Environment.PlcObject> function = args -> {
-            try {
-                scope = new Scope(scope);
-                for(int i = 0; i < ast.getParameters().size(); i++) {
-                    scope.defineVariable(ast.getParameters().get(i), args.get(i));
-                }
-                for(int i = 0; i < ast.getStatements().size(); i++) {
-                    visit(ast.getStatements().get(i));
-                }
-            }
-            catch(Return deliverable) {
-                scope = scope.getParent();
-                return deliverable.value;
-            }
-
-            return Environment.NIL;
-        };
-
-        scope.defineFunction(ast.getName(), ast.getParameters().size(), function);
+        scope.defineFunction(ast.getName(), ast.getParameters().size(), body(ast));
 
         return Environment.NIL; //TODO
     }
 
+    /**
+     * Returns a new body for the method, with its own tiering counters and
+     * memo, if it is memoized.
+     */
+    private Body body(Ast.Method ast) {
+        Memo memo = null;
+        if(memoization > 0 && ast.isPure()) {
+            memo = new Memo(ast.getName() + "/" + ast.getParameters().size(), memoization);
+            memos.add(memo);
+        }
+        return new Body(ast, tiering == null ? null : tiering.method(ast), memo);
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Expression ast) {
         visit(ast.getExpression());
@@ -90,12 +428,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Declaration ast) {
-        if(ast.getValue().isPresent()) {
-            scope.defineVariable(ast.getName(), visit(ast.getValue().get()));
-        }
-        else {
-            scope.defineVariable(ast.getName(), Environment.NIL);
-        }
+        Environment.PlcObject value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Environment.NIL;
+        allocate(Budget.VARIABLE + Budget.sizeOf(value.getValue()));
+        scope.defineVariable(ast.getName(), value);
 
         return Environment.NIL;
     }
@@ -111,14 +446,20 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 visit(receiver.getReceiver().get()).setField(receiver.getName(), visit(ast.getValue()));
                 return Environment.NIL;
             }
-            scope.lookupVariable(receiver.getName()).setValue(visit(ast.getValue()));
+            Environment.Variable variable = scope.lookupVariable(receiver.getName());
+            Environment.PlcObject value = visit(ast.getValue());
+            retain(variable.getValue(), value);
+            variable.setValue(value);
             return Environment.NIL;
         }
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
-        if(requireType(Boolean.class, visit(ast.getCondition()))) {
+        boolean condition = requireType(Boolean.class, visit(ast.getCondition()));
+        branched(ast, condition);
+        if(condition) {
+            allocate(Budget.SCOPE);
             scope = new Scope(scope);
             try {
                 for (Ast.Stmt stmt : ast.getThenStatements()) {
@@ -126,10 +467,12 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 }
             }
             finally {
+                release(scope);
                 scope = scope.getParent();
             }
         }
         else {
+            allocate(Budget.SCOPE);
             scope = new Scope(scope);
             try {
                 for (Ast.Stmt stmt : ast.getElseStatements()) {
@@ -137,6 +480,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 }
             }
             finally {
+                release(scope);
                 scope = scope.getParent();
             }
         }
@@ -146,10 +490,33 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.For ast) {
-        Iterable<Environment.PlcObject> range = requireType(Iterable.class, visit(ast.getValue()));
+        Environment.PlcObject value = visit(ast.getValue());
+        Tiering.Counters counters = tiering == null ? null : tiering.loop(ast, running);
+        if(value.getValue() instanceof Range && ((Range) value.getValue()).isLong()) {
+            Range range = (Range) value.getValue();
+            long start = range.getStart().longValue();
+            long end = range.getEnd().longValue();
+            long step = range.getStep().longValue();
+            long iterations = step > 0 ? Math.max(0, (end - start + step - 1) / step) : Math.max(0, (start - end - step - 1) / -step);
+            if(iterations >= PARALLEL_THRESHOLD && isParallel(ast)) {
+                return parallel(ast, start, end, step, iterations);
+            }
+            return count(ast, start, end, step, counters);
+        }
+        Iterable<Environment.PlcObject> range = requireType(Iterable.class, value);
         for(Object iter : range) {
+            if(budget != null) {
+                budget.step();
+            }
+            if(counters != null) {
+                counters.backEdge();
+            }
+            iterated(ast);
             scope = new Scope(scope);
             scope.defineVariable(ast.getName(), Environment.create(((Environment.PlcObject)iter).getValue()));
+            if(budget != null) {
+                budget.allocate(Budget.sizeOf(scope));
+            }
 
             try {
                 for (Ast.Stmt stmt : ast.getStatements()) {
@@ -158,6 +525,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 }
             }
             finally {
+                release(scope);
                 scope = scope.getParent();
             }
         }
@@ -165,26 +533,248 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return Environment.NIL;
     }
 
+    /**
+     * Runs a FOR loop over a range with a primitive counter rather than an
+     * iterator. The loop variable is defined once and reassigned each
+     * iteration, and the body only gets a scope of its own if it declares
+     * variables, so the only allocation per iteration is the value itself.
+     */
+    private Environment.PlcObject count(Ast.Stmt.For ast, long start, long end, long step, Tiering.Counters counters) {
+        boolean block = false;
+        for(Ast.Stmt stmt : ast.getStatements()) {
+            block |= stmt instanceof Ast.Stmt.Declaration;
+        }
+
+        scope = new Scope(scope);
+        try {
+            Scope values = new Scope(null);
+            Environment.Variable variable = scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+            if(budget != null) {
+                budget.allocate(Budget.sizeOf(scope));
+            }
+            for(long i = start; step > 0 ? i < end : i > end; i += step) {
+                if(budget != null) {
+                    budget.step();
+                }
+                if(counters != null) {
+                    counters.backEdge();
+                }
+                iterated(ast);
+                Environment.PlcObject value = new Environment.PlcObject(Environment.Type.INTEGER, values, BigInteger.valueOf(i));
+                retain(variable.getValue(), value);
+                variable.setValue(value);
+                if(block) {
+                    allocate(Budget.SCOPE);
+                    scope = new Scope(scope);
+                }
+                try {
+                    for(int j = 0; j < ast.getStatements().size(); j++) {
+                        visit(ast.getStatements().get(j));
+                    }
+                }
+                finally {
+                    if(block) {
+                        release(scope);
+                        scope = scope.getParent();
+                    }
+                }
+            }
+        }
+        finally {
+            release(scope);
+            scope = scope.getParent();
+        }
+
+        return Environment.NIL;
+    }
+
+    /**
+     * Returns whether a FOR loop over a range may be split across threads: it
+     * must have been found parallel by the {@link Analyzer}, each reduction
+     * must currently hold an Integer, or a Decimal whose sums and products
+     * are exact (see {@link Arithmetic#isAssociative()}), and, since a
+     * {@link Budget} is not shared between threads, the execution must be
+     * unlimited.
+     */
+    private boolean isParallel(Ast.Stmt.For ast) {
+        if(!ast.isParallel() || budget != null) {
+            return false;
+        }
+        for(String name : ast.getReductions().keySet()) {
+            Environment.Variable variable = scope.lookupVariable(name);
+            Object value = (variable.getValue() != UNINITIALIZED ? variable.getValue() : initialize(variable)).getValue();
+            if(!(value instanceof BigInteger) && !(value instanceof BigDecimal && arithmetic.isAssociative())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a parallel FOR loop over a range in chunks on the common
+     * {@link ForkJoinPool}. Each chunk is run by an interpreter of its own
+     * (see {@link #fork()}), in a scope nested in this one, where every
+     * reduction is shadowed by a variable starting at the identity of its
+     * operator. Once every chunk is done, their results are combined into the
+     * reductions in order.
+     */
+    private Environment.PlcObject parallel(Ast.Stmt.For ast, long start, long end, long step, long iterations) {
+        long chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4L, iterations / PARALLEL_CHUNK));
+        long size = (iterations + chunks - 1) / chunks;
+        Scope outer = scope;
+        List<CompletableFuture<Scope>> tasks = new ArrayList<>();
+        for(long c = 0; c < chunks; c++) {
+            long from = start + step * size * c;
+            long to = c == chunks - 1 ? end : from + step * size;
+            tasks.add(CompletableFuture.supplyAsync(() -> fork().chunk(ast, outer, from, to, step), ForkJoinPool.commonPool()));
+        }
+
+        // A failing chunk fails the loop with its own exception, and the
+        // chunks not yet started are skipped.
+        List<Scope> partials = new ArrayList<>();
+        try {
+            for(CompletableFuture<Scope> task : tasks) {
+                partials.add(task.join());
+            }
+        }
+        catch(CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        finally {
+            for(CompletableFuture<Scope> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        for(Map.Entry<String, String> reduction : ast.getReductions().entrySet()) {
+            Environment.Variable variable = scope.lookupVariable(reduction.getKey());
+            Object value = variable.getValue().getValue();
+            for(Scope partial : partials) {
+                value = Operators.apply(reduction.getValue(), value, partial.lookupVariable(reduction.getKey()).getValue().getValue(), arithmetic);
+            }
+            variable.setValue(Environment.create(value));
+        }
+
+        return Environment.NIL;
+    }
+
+    /**
+     * Runs the iterations of a parallel loop from {@code from} up to, but
+     * excluding, {@code to}, returning the scope holding the partial results
+     * of its reductions.
+     */
+    private Scope chunk(Ast.Stmt.For ast, Scope outer, long from, long to, long step) {
+        Scope partial = new Scope(outer);
+        for(Map.Entry<String, String> reduction : ast.getReductions().entrySet()) {
+            boolean decimal = outer.lookupVariable(reduction.getKey()).getValue().getValue() instanceof BigDecimal;
+            boolean sum = reduction.getValue().equals("+");
+            Object identity = decimal ? (sum ? BigDecimal.ZERO : BigDecimal.ONE) : (sum ? BigInteger.ZERO : BigInteger.ONE);
+            partial.defineVariable(reduction.getKey(), Environment.create(identity));
+        }
+        scope = partial;
+        count(ast, from, to, step, null);
+        return partial;
+    }
+
+    /**
+     * Returns an interpreter for running part of a parallel loop or a
+     * spawned call on another thread. It shares the globals and output of this one, but has its own
+     * state and its own bodies for the methods, as a {@link Body} belongs to
+     * the interpreter defining it. Neither tiering nor memoization carry
+     * over, as their counters and memos are not thread-safe, while the
+     * instrumentation of a {@link Monitored} interpreter is shared.
+     */
+    private Interpreter fork() {
+        Interpreter worker = worker(globals, out);
+        worker.source = source;
+        worker.tasks = tasks;
+        worker.lazy = lazy;
+        worker.arithmetic = arithmetic;
+        for(int i = 0; i < source.getMethods().size(); i++) {
+            worker.visit(source.getMethods().get(i));
+        }
+        Resolved resolved = this.resolved;
+        if(resolved != null) {
+            worker.resolve(resolved.program);
+        }
+        return worker;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
+        Tiering.Counters counters = tiering == null ? null : tiering.loop(ast, running);
+        CompletableFuture<Node.Method> compiling = null;
+        long iterations = 0;
         while(requireType(Boolean.class, visit(ast.getCondition()))) {
+            iterated(ast);
+            allocate(Budget.SCOPE);
+            scope = new Scope(scope);
             try {
-                scope = new Scope(scope);
                 for(Ast.Stmt stmt : ast.getStatements()) {
                     visit(stmt);
                 }
             } finally {
+                release(scope);
                 scope = scope.getParent();
             }
+
+            if(budget != null) {
+                budget.step();
+            }
+            if(counters != null) {
+                // A hot loop is compiled against the current scope and, once
+                // ready, continues in compiled form from the next condition.
+                counters.backEdge();
+                if(compiling == null) {
+                    if(++iterations >= tiering.getBackEdgeThreshold()) {
+                        compiling = tiering.compile(counters, ast, scope, arithmetic);
+                    }
+                }
+                else if(compiling.isDone()) {
+                    Node.Method loop = compiling.join();
+                    if(loop == null) {
+                        counters = null;
+                        continue;
+                    }
+                    Object result = loop.execute();
+                    if(result != null) {
+                        returning.value = Node.wrap(result);
+                        throw returning;
+                    }
+                    return Environment.NIL;
+                }
+            }
         }
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
-        Environment.PlcObject value = visit(ast.getValue());
+        Ast.Expr value = ast.getValue();
+        while(value instanceof Ast.Expr.Group) {
+            value = ((Ast.Expr.Group) value).getExpression();
+        }
 
-        throw new Return(value);
+        // A call to another method of this interpreter in tail position is
+        // not made here; its arguments are handed back to the Body running
+        // this method, which continues with the callee in the same Java frame.
+        if(value instanceof Ast.Expr.Function && !((Ast.Expr.Function) value).getReceiver().isPresent()) {
+            Ast.Expr.Function call = (Ast.Expr.Function) value;
+            Environment.Invoker invoker = lookup(call).getInvoker();
+            if(invoker instanceof Body && ((Body) invoker).owner() == this) {
+                Environment.PlcObject[] arguments = new Environment.PlcObject[call.getArguments().size()];
+                for(int i = 0; i < arguments.length; i++) {
+                    arguments[i] = visit(call.getArguments().get(i));
+                }
+                returning.value = null;
+                returning.target = (Body) invoker;
+                returning.arguments = arguments;
+                throw returning;
+            }
+        }
+
+        returning.value = visit(value);
+        returning.target = null;
+        throw returning;
     }
 
     @Override
@@ -192,10 +782,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         if(ast.getLiteral() == null) {
             return Environment.NIL;
         }
-
         if(ast.getLiteral() instanceof String) { return new Environment.PlcObject(Environment.Type.STRING, new Scope(null), ast.getLiteral());}
         if(ast.getLiteral() instanceof BigInteger) { return new Environment.PlcObject(Environment.Type.INTEGER, new Scope(null), ast.getLiteral());}
-        if(ast.getLiteral() instanceof BigDecimal) { return new Environment.PlcObject(Environment.Type.DECIMAL, new Scope(null), ast.getLiteral());}
+        if(ast.getLiteral() instanceof BigDecimal) { return new Environment.PlcObject(Environment.Type.DECIMAL, new Scope(null), arithmetic.decimal((BigDecimal) ast.getLiteral()));}
         if(ast.getLiteral() instanceof Character) { return new Environment.PlcObject(Environment.Type.CHARACTER, new Scope(null), ast.getLiteral());}
         if(ast.getLiteral() instanceof Boolean) { return new Environment.PlcObject(Environment.Type.BOOLEAN, new Scope(null), ast.getLiteral());}
         return Environment.create(ast.getLiteral());
@@ -226,101 +815,11 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     }
                     return Environment.create(false);
                 }
-            case "<":
-                if(visit(ast.getLeft()).getValue().getClass() != visit(ast.getRight()).getValue().getClass()) {
-                    throw new RuntimeException();
-                }
-                if(requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) < 0) {
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            case "<=":
-                if(visit(ast.getLeft()).getValue().getClass() != visit(ast.getRight()).getValue().getClass()) {
-                    throw new RuntimeException();
-                }
-                if(requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) <= 0) {
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            case ">":
-                if(visit(ast.getLeft()).getValue().getClass() != visit(ast.getRight()).getValue().getClass()) {
-                    throw new RuntimeException();
-                }
-                if(requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) > 0) {
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            case ">=":
-                if(visit(ast.getLeft()).getValue().getClass() != visit(ast.getRight()).getValue().getClass()) {
-                    throw new RuntimeException();
-                }
-                if(requireType(Comparable.class, visit(ast.getLeft())).compareTo(requireType(Comparable.class, visit(ast.getRight()))) >= 0) {
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            case "==":
-                if(visit(ast.getLeft()).getValue().equals(visit(ast.getRight()).getValue())) {
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            case "!=":
-                if(visit(ast.getLeft()).getValue().equals(visit(ast.getRight()).getValue())) {
-                    return Environment.create(false);
-                }
-                return Environment.create(true);
-            case "+":
-                if(visit(ast.getLeft()).getValue() instanceof String || visit(ast.getRight()).getValue() instanceof String) {
-                    return Environment.create((String)visit(ast.getLeft()).getValue() + (String)visit(ast.getRight()).getValue());
-                }
-                else if(visit(ast.getLeft()).getValue() instanceof BigInteger && visit(ast.getRight()).getValue() instanceof BigInteger) {
-                    BigInteger result = requireType(BigInteger.class, visit(ast.getLeft())).add(requireType(BigInteger.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                else if(visit(ast.getLeft()).getValue() instanceof BigDecimal && visit(ast.getRight()).getValue() instanceof BigDecimal) {
-                    BigDecimal result = requireType(BigDecimal.class, visit(ast.getLeft())).add(requireType(BigDecimal.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                throw new RuntimeException();
-            case "-":
-                if(visit(ast.getLeft()).getValue() instanceof BigInteger && visit(ast.getRight()).getValue() instanceof BigInteger) {
-                    BigInteger result = requireType(BigInteger.class, visit(ast.getLeft())).subtract(requireType(BigInteger.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                else if(visit(ast.getLeft()).getValue() instanceof BigDecimal && visit(ast.getRight()).getValue() instanceof BigDecimal) {
-                    BigDecimal result = requireType(BigDecimal.class, visit(ast.getLeft())).subtract(requireType(BigDecimal.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                throw new RuntimeException();
-            case "*":
-                if(visit(ast.getLeft()).getValue() instanceof BigInteger && visit(ast.getRight()).getValue() instanceof BigInteger) {
-                    BigInteger result = requireType(BigInteger.class, visit(ast.getLeft())).multiply(requireType(BigInteger.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                else if(visit(ast.getLeft()).getValue() instanceof BigDecimal && visit(ast.getRight()).getValue() instanceof BigDecimal) {
-                    BigDecimal result = requireType(BigDecimal.class, visit(ast.getLeft())).multiply(requireType(BigDecimal.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                throw new RuntimeException();
-            case "/":
-                if(visit(ast.getLeft()).getValue() instanceof BigInteger && visit(ast.getRight()).getValue() instanceof BigInteger) {
-                    if(requireType(BigInteger.class, visit(ast.getRight())).equals(0)) {
-                        throw new RuntimeException();
-                    }
-
-                    BigInteger result = requireType(BigInteger.class, visit(ast.getLeft())).divide(requireType(BigInteger.class, visit(ast.getRight())));
-                    return Environment.create(result);
-                }
-                else if(visit(ast.getLeft()).getValue() instanceof BigDecimal && visit(ast.getRight()).getValue() instanceof BigDecimal) {
-                    if(requireType(BigDecimal.class, visit(ast.getRight())).equals(0)) {
-                        throw new RuntimeException();
-                    }
-
-                    BigDecimal result = requireType(BigDecimal.class, visit(ast.getLeft())).divide(requireType(BigDecimal.class, visit(ast.getRight())), 1, RoundingMode.HALF_EVEN);
-                    return Environment.create(result);
-                }
-                throw new RuntimeException();
         }
-        throw new RuntimeException();
+
+        Environment.PlcObject left = visit(ast.getLeft());
+        Environment.PlcObject right = visit(ast.getRight());
+        return Environment.create(Operators.apply(ast.getOperator(), left.getValue(), right.getValue(), arithmetic));
     }
 
     @Override
@@ -328,15 +827,37 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         if(ast.getReceiver().isPresent()) {
             return visit(ast.getReceiver().get()).getField(ast.getName()).getValue();
         }
-        return scope.lookupVariable(ast.getName()).getValue();
+        Environment.Variable variable = scope.lookupVariable(ast.getName());
+        Environment.PlcObject value = variable.getValue();
+        return value != UNINITIALIZED ? value : initialize(variable);
+    }
+
+    /**
+     * Runs the initializer of a lazy field on its first read, in the global
+     * scope as at startup. Interpreters reading it at once initialize it only
+     * once.
+     */
+    private Environment.PlcObject initialize(Environment.Variable variable) {
+        synchronized(variable) {
+            if(variable.getValue() == UNINITIALIZED) {
+                Scope current = scope;
+                scope = globals;
+                try {
+                    Environment.PlcObject value = visit(lazy.get(variable).getValue().get());
+                    retain(variable.getValue(), value);
+                    variable.setValue(value);
+                }
+                finally {
+                    scope = current;
+                }
+            }
+            return variable.getValue();
+        }
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Function ast) {
-        ArrayList<Environment.PlcObject> args = new ArrayList<>();
-        for(int i = 0; i < ast.getArguments().size(); i++) {
-            args.add(visit(ast.getArguments().get(i)));
-        }
+        List<Ast.Expr> arguments = ast.getArguments();
 
         if(ast.getReceiver().isPresent()) {
             /**
@@ -348,36 +869,550 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
              */
             Environment.PlcObject receiver = visit(ast.getReceiver().get());
 
-            List<Environment.PlcObject> objects = new ArrayList<>();
-            for(int i = 0; i < ast.getArguments().size(); i++) {
-                objects.add(visit(ast.getArguments().get(i)));
+            Scope methods = receiver.getType().getScope();
+            Environment.Function function = ast.getCachedFunction(methods);
+            if(function == null) {
+                int version = methods.getFunctionVersion();
+                function = receiver.getType().getMethod(ast.getName(), arguments.size());
+                ast.setCachedFunction(methods, version, function);
             }
-            return receiver.callMethod(ast.getName(), objects);
+
+            switch(arguments.size()) {
+                case 0:
+                    return function.invoke(receiver);
+                case 1:
+                    return function.invoke(receiver, visit(arguments.get(0)));
+                case 2:
+                    return function.invoke(receiver, visit(arguments.get(0)), visit(arguments.get(1)));
+                case 3:
+                    return function.invoke(receiver, visit(arguments.get(0)), visit(arguments.get(1)), visit(arguments.get(2)));
+                default:
+                    Environment.PlcObject[] objects = new Environment.PlcObject[arguments.size() + 1];
+                    objects[0] = receiver;
+                    for(int i = 0; i < arguments.size(); i++) {
+                        objects[i + 1] = visit(arguments.get(i));
+                    }
+                    return function.invoke(objects);
+            }
+        }
+
+        Environment.Function function = lookup(ast);
+        switch(arguments.size()) {
+            case 0:
+                return function.invoke();
+            case 1:
+                return function.invoke(visit(arguments.get(0)));
+            case 2:
+                return function.invoke(visit(arguments.get(0)), visit(arguments.get(1)));
+            case 3:
+                return function.invoke(visit(arguments.get(0)), visit(arguments.get(1)), visit(arguments.get(2)));
+            case 4:
+                return function.invoke(visit(arguments.get(0)), visit(arguments.get(1)), visit(arguments.get(2)), visit(arguments.get(3)));
+            default:
+                Environment.PlcObject[] objects = new Environment.PlcObject[arguments.size()];
+                for(int i = 0; i < arguments.size(); i++) {
+                    objects[i] = visit(arguments.get(i));
+                }
+                return function.invoke(objects);
+        }
+    }
+
+    /**
+     * Starts the call on another thread, in an interpreter of its own (see
+     * {@link #fork()}), once its arguments are evaluated here. The Analyzer
+     * only lets isolated methods be spawned, which never touch fields, so
+     * tasks share nothing mutable but the output. Since a {@link Budget} is
+     * not shared between threads, under one the call instead runs to
+     * completion before SPAWN returns, which no isolated method can tell
+     * apart except by the order of printed lines.
+     */
+    @Override
+    public Environment.PlcObject visit(Ast.Expr.Spawn ast) {
+        Ast.Expr.Function call = ast.getCall();
+        Environment.PlcObject[] arguments = new Environment.PlcObject[call.getArguments().size()];
+        for(int i = 0; i < arguments.length; i++) {
+            arguments[i] = visit(call.getArguments().get(i));
+        }
+
+        CompletableFuture<Environment.PlcObject> task;
+        if(budget != null) {
+            try {
+                task = CompletableFuture.completedFuture(lookup(call).invoke(arguments));
+            }
+            catch(Budget.Exceeded e) {
+                throw e;
+            }
+            catch(RuntimeException e) {
+                task = CompletableFuture.failedFuture(e);
+            }
+        }
+        else {
+            Interpreter worker = fork();
+            task = CompletableFuture.supplyAsync(() -> worker.lookup(call).invoke(arguments), SPAWNER);
+            tasks.add(task);
+        }
+        return Environment.create(task);
+    }
+
+    /**
+     * Waits for the spawned call to finish, failing with its exception if it
+     * failed.
+     */
+    @Override
+    public Environment.PlcObject visit(Ast.Expr.Await ast) {
+        CompletableFuture<?> task = requireType(CompletableFuture.class, visit(ast.getValue()));
+        try {
+            return (Environment.PlcObject) task.join();
+        }
+        catch(CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Waits for every task spawned during the execution, including those
+     * spawned by other tasks, so that none still prints once it finishes. A
+     * task's failure is only reported where it is awaited.
+     */
+    private void settle() {
+        CompletableFuture<Environment.PlcObject> task;
+        while((task = tasks.poll()) != null) {
+            try {
+                task.join();
+            }
+            catch(CompletionException | CancellationException e) {
+                // Reported by AWAIT, if at all.
+            }
+        }
+    }
+
+    private static ExecutorService spawner() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "plc-spawn");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Returns the global function called by the given expression, through its
+     * call-site cache.
+     */
+    private Environment.Function lookup(Ast.Expr.Function ast) {
+        Resolved resolved = this.resolved;
+        if(resolved != null) {
+            int index = resolved.program.getIndex(ast);
+            if(index >= 0) {
+                return resolved.functions[index];
+            }
+        }
+        Environment.Function function = ast.getCachedFunction(globals);
+        if(function == null) {
+            int version = globals.getFunctionVersion();
+            function = globals.lookupFunction(ast.getName(), ast.getArguments().size());
+            ast.setCachedFunction(globals, version, function);
+        }
+        return function;
+    }
+
+    /**
+     * Creates the interpreter for a {@link #fork()}, before it is given the
+     * state of this one.
+     */
+    Interpreter worker(Scope globals, Output out) {
+        return new Interpreter(globals, null, out, null);
+    }
+
+    /**
+     * Called with the outcome of every IF condition, and by every iteration
+     * of a loop below. Both do nothing unless overridden by a
+     * {@link Monitored} interpreter, so they are otherwise inlined away.
+     */
+    void branched(Ast.Stmt.If ast, boolean condition) {
+    }
+
+    void iterated(Ast.Stmt loop) {
+    }
+
+    /**
+     * Charges an allocation to the budget, if there is one.
+     */
+    private void allocate(long bytes) {
+        if(budget != null) {
+            budget.allocate(bytes);
+        }
+    }
+
+    /**
+     * Charges the budget, if there is one, for a variable's value being
+     * replaced, which only retains the difference.
+     */
+    private void retain(Environment.PlcObject previous, Environment.PlcObject value) {
+        if(budget != null) {
+            budget.allocate(Budget.sizeOf(value.getValue()) - Budget.sizeOf(previous.getValue()));
         }
+    }
 
-        return scope.lookupFunction(ast.getName(), ast.getArguments().size()).invoke(args); //TODO
+    /**
+     * Releases what the budget, if there is one, was charged for a scope and
+     * its variables, once the scope is left.
+     */
+    private void release(Scope scope) {
+        if(budget != null) {
+            budget.release(Budget.sizeOf(scope));
+        }
     }
 
     /**
      * Helper function to ensure an object is of the appropriate type.
      */
     private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
-        if (type.isInstance(object.getValue())) {
-            return type.cast(object.getValue());
-        } else {
-            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        return Operators.requireType(type, object.getValue());
+    }
+
+    /**
+     * Invoker for a method defined in this interpreter. Each invocation binds
+     * its arguments directly into a fresh scope, which is the only allocation
+     * made per call.
+     *
+     * When tiering, each invocation is counted and a hot method is compiled in
+     * the background. The first invocation after compilation finishes replaces
+     * this invoker in the global scope and runs the compiled method instead.
+     *
+     * A memoized body looks its arguments up in its memo before running, and
+     * records the result after.
+     *
+     * Tail calls between bodies run in a loop within {@link #execute(Scope)},
+     * so self and mutual tail recursion use constant Java stack. Each frame of
+     * the loop is parented to the scope the first call was made from, which
+     * keeps the scope chain constant as well.
+     */
+    private final class Body extends Environment.Invoker {
+
+        private final Ast.Method method;
+        private final Tiering.Counters counters;
+        private final Memo memo;
+        private CompletableFuture<Node.Method> compiling = null;
+        private Environment.Invoker compiled = null;
+
+        private Body(Ast.Method method, Tiering.Counters counters, Memo memo) {
+            this.method = method;
+            this.counters = counters;
+            this.memo = memo;
+        }
+
+        /**
+         * Returns the compiled invoker to run instead of interpreting, or
+         * {@code null} if the method is still interpreted.
+         */
+        private Environment.Invoker tier() {
+            if(counters == null || compiled != null) {
+                return compiled;
+            }
+            counters.invoked();
+            if(compiling == null) {
+                if(counters.isHot()) {
+                    compiling = tiering.compile(counters, method, globals, arithmetic);
+                }
+            }
+            else if(compiling.isDone() && compiling.join() != null) {
+                compiled = compiling.join().getEntry();
+                // Unless the method has been reloaded in the meantime.
+                globals.replaceFunction(method.getName(), method.getParameters().size(), this, compiled);
+                synchronized(Interpreter.this) {
+                    if(resolved != null) {
+                        resolve(resolved.program);
+                    }
+                }
+            }
+            return compiled;
+        }
+
+        @Override
+        public Environment.PlcObject invoke(Environment.PlcObject[] arguments) {
+            if(memo != null) {
+                return memoized(arguments);
+            }
+            return call(arguments);
+        }
+
+        private Environment.PlcObject memoized(Environment.PlcObject[] arguments) {
+            Object[] values = new Object[arguments.length];
+            for(int i = 0; i < arguments.length; i++) {
+                values[i] = Rope.flatten(arguments[i].getValue());
+            }
+            List<Object> key = Arrays.asList(values);
+            Environment.PlcObject result = memo.get(key);
+            if(result == null) {
+                result = call(arguments);
+                memo.put(key, result);
+            }
+            return result;
+        }
+
+        private Environment.PlcObject call(Environment.PlcObject[] arguments) {
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke(arguments);
+            }
+            Scope frame = new Scope(scope);
+            for(int i = 0; i < arguments.length; i++) {
+                frame.defineVariable(method.getParameters().get(i), arguments[i]);
+            }
+            return execute(frame);
+        }
+
+        @Override
+        public Environment.PlcObject invoke() {
+            if(memo != null) {
+                return memoized(new Environment.PlcObject[0]);
+            }
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke();
+            }
+            return execute(new Scope(scope));
+        }
+
+        @Override
+        public Environment.PlcObject invoke(Environment.PlcObject a0) {
+            if(memo != null) {
+                return memoized(new Environment.PlcObject[] {a0});
+            }
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke(a0);
+            }
+            Scope frame = new Scope(scope);
+            frame.defineVariable(method.getParameters().get(0), a0);
+            return execute(frame);
+        }
+
+        @Override
+        public Environment.PlcObject invoke(Environment.PlcObject a0, Environment.PlcObject a1) {
+            if(memo != null) {
+                return memoized(new Environment.PlcObject[] {a0, a1});
+            }
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke(a0, a1);
+            }
+            Scope frame = new Scope(scope);
+            frame.defineVariable(method.getParameters().get(0), a0);
+            frame.defineVariable(method.getParameters().get(1), a1);
+            return execute(frame);
+        }
+
+        @Override
+        public Environment.PlcObject invoke(Environment.PlcObject a0, Environment.PlcObject a1, Environment.PlcObject a2) {
+            if(memo != null) {
+                return memoized(new Environment.PlcObject[] {a0, a1, a2});
+            }
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke(a0, a1, a2);
+            }
+            Scope frame = new Scope(scope);
+            frame.defineVariable(method.getParameters().get(0), a0);
+            frame.defineVariable(method.getParameters().get(1), a1);
+            frame.defineVariable(method.getParameters().get(2), a2);
+            return execute(frame);
+        }
+
+        @Override
+        public Environment.PlcObject invoke(Environment.PlcObject a0, Environment.PlcObject a1, Environment.PlcObject a2, Environment.PlcObject a3) {
+            if(memo != null) {
+                return memoized(new Environment.PlcObject[] {a0, a1, a2, a3});
+            }
+            Environment.Invoker compiled = tier();
+            if(compiled != null) {
+                return compiled.invoke(a0, a1, a2, a3);
+            }
+            Scope frame = new Scope(scope);
+            frame.defineVariable(method.getParameters().get(0), a0);
+            frame.defineVariable(method.getParameters().get(1), a1);
+            frame.defineVariable(method.getParameters().get(2), a2);
+            frame.defineVariable(method.getParameters().get(3), a3);
+            return execute(frame);
+        }
+
+        private Interpreter owner() {
+            return Interpreter.this;
         }
+
+        private Environment.PlcObject execute(Scope frame) {
+            Scope caller = scope;
+            Tiering.Counters outer = running;
+            Body body = this;
+            Profiler profiled = profiler;
+            if(profiled != null) {
+                profiled.enter(method);
+            }
+            try {
+                while(true) {
+                    Scope current = frame;
+                    if(budget != null) {
+                        budget.step();
+                        budget.allocate(Budget.sizeOf(current));
+                    }
+                    scope = current;
+                    running = body.counters;
+                    try {
+                        for(int i = 0; i < body.method.getStatements().size(); i++) {
+                            visit(body.method.getStatements().get(i));
+                        }
+                        return Environment.NIL;
+                    }
+                    catch(Return deliverable) {
+                        if(deliverable.target == null) {
+                            return deliverable.value;
+                        }
+                        body = deliverable.target;
+                        Environment.PlcObject[] arguments = deliverable.arguments;
+                        deliverable.target = null;
+                        deliverable.arguments = null;
+
+                        if(profiled != null) {
+                            profiled.exit();
+                            profiled.enter(body.method);
+                        }
+                        Environment.Invoker compiled = body.tier();
+                        if(compiled != null) {
+                            return compiled.invoke(arguments);
+                        }
+                        frame = new Scope(caller);
+                        for(int i = 0; i < arguments.length; i++) {
+                            frame.defineVariable(body.method.getParameters().get(i), arguments[i]);
+                        }
+                    }
+                    finally {
+                        release(current);
+                    }
+                }
+            }
+            finally {
+                scope = caller;
+                running = outer;
+                if(profiled != null) {
+                    profiled.exit();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Body{" +
+                    "method=" + method.getName() +
+                    '}';
+        }
+
+    }
+
+    /**
+     * An interpreter which publishes each statement it visits to a profiler,
+     * and counts the statements, branches and loop iterations it interprets
+     * in an instrumentation. The monitoring is kept out of the plain
+     * interpreter, which visits statements directly, so executions which are
+     * not monitored pay nothing for it.
+     */
+    public static class Monitored extends Interpreter {
+
+        private Instrumentation instrumentation = null;
+
+        public Monitored(Scope parent) {
+            super(parent);
+        }
+
+        public Monitored(Scope parent, Output out) {
+            super(parent, null, out);
+        }
+
+        /**
+         * Publishes the method and statement being interpreted to the profiler
+         * from now on, or stops if it is {@code null}. The profiler is started
+         * and stopped separately.
+         */
+        public void setProfiler(Profiler profiler) {
+            ((Interpreter) this).profiler = profiler;
+        }
+
+        /**
+         * Counts the statements, branches and loop iterations interpreted from
+         * now on, or stops if it is {@code null}.
+         */
+        public void setInstrumentation(Instrumentation instrumentation) {
+            this.instrumentation = instrumentation;
+        }
+
+        @Override
+        public Environment.PlcObject visit(Ast ast) {
+            if(ast instanceof Ast.Stmt) {
+                Profiler profiler = ((Interpreter) this).profiler;
+                if(profiler != null) {
+                    profiler.at((Ast.Stmt) ast);
+                }
+                if(instrumentation != null) {
+                    instrumentation.statement((Ast.Stmt) ast);
+                }
+            }
+            return super.visit(ast);
+        }
+
+        @Override
+        void branched(Ast.Stmt.If ast, boolean condition) {
+            if(instrumentation != null) {
+                instrumentation.branch(ast, condition);
+            }
+        }
+
+        @Override
+        void iterated(Ast.Stmt loop) {
+            if(instrumentation != null) {
+                instrumentation.iteration(loop);
+            }
+        }
+
+        @Override
+        Interpreter worker(Scope globals, Output out) {
+            Monitored worker = new Monitored(globals, out);
+            worker.instrumentation = instrumentation;
+            return worker;
+        }
+
+    }
+
+    /**
+     * A program and the function table filled for it, published as one.
+     */
+    private static final class Resolved {
+
+        private final Program program;
+        private final Environment.Function[] functions;
+
+        private Resolved(Program program, Environment.Function[] functions) {
+            this.program = program;
+            this.functions = functions;
+        }
+
     }
 
     /**
-     * Exception class for returning values.
+     * Exception class for returning values. A single stackless instance is
+     * reused per interpreter, since the value is read as soon as it is caught.
+     * A tail call is returned as its target and arguments instead of a value.
      */
     private static class Return extends RuntimeException {
 
-        private final Environment.PlcObject value;
+        private Environment.PlcObject value;
+        private Body target;
+        private Environment.PlcObject[] arguments;
 
-        private Return(Environment.PlcObject value) {
-            this.value = value;
+        private Return() {
+            super(null, null, false, false);
         }
 
     }
@@ -0,0 +1,903 @@
+package plc.project;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static plc.project.ClassWriter.*;
+
+/**
+ * Compiles an analyzed {@link Ast.Source} directly to JVM bytecode and loads
+ * it in this process as a hidden class, so programs run as if they had been
+ * written through the {@link Generator} and compiled with javac, but without
+ * writing any files.
+ *
+ * The generated class mirrors the Generator's output: fields become static
+ * fields, methods become static methods, and values use primitive JVM types
+ * where they can. Programs print exactly what the {@link Interpreter} does,
+ * however. Integers are {@code long}s whose arithmetic throws on overflow,
+ * and a program which overflows is run again in the interpreter, as is a
+ * program overflowing the stack, since the interpreter eliminates tail
+ * calls. The output of a compiled program is held back until it finishes,
+ * so that nothing it printed is seen twice if it is run again. Decimals are
+ * {@code double}s with {@link Arithmetic#DOUBLE}, and otherwise BigDecimals
+ * computed by the arithmetic, as the interpreter computes them. A program
+ * using anything this compiler does not support is interpreted from the
+ * start.
+ */
+public final class JvmCompiler implements Ast.Visitor<Void> {
+
+    private static final String CLASS_NAME = "plc/project/Script";
+    private static final String OUTPUT = "Lplc/project/Output;";
+    private static final String ARITHMETIC = "Lplc/project/Arithmetic;";
+    private static final String BIG_DECIMAL = "Ljava/math/BigDecimal;";
+
+    private final Arithmetic arithmetic;
+
+    /**
+     * The BigDecimal literals, loaded from the static fields
+     * {@code $decimal0}, {@code $decimal1}, ... which the program sets.
+     */
+    private final List<BigDecimal> decimals = new ArrayList<>();
+
+    private ClassWriter writer;
+    private ClassWriter.Code code;
+    private Environment.Type returnType;
+
+    private final Deque<Map<String, Local>> blocks = new ArrayDeque<>();
+    private int nextSlot = 0;
+
+    public JvmCompiler() {
+        this(Arithmetic.DEFAULT);
+    }
+
+    /**
+     * Creates a compiler for programs analyzed with the given arithmetic,
+     * which an interpreter running them would compute Decimals with.
+     */
+    public JvmCompiler(Arithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+    }
+
+    /**
+     * Compiles and loads the source, returning the program ready to execute,
+     * which is interpreted if the source cannot be compiled.
+     */
+    public Program compile(Ast.Source ast) {
+        try {
+            try {
+                visit(ast);
+            } catch (Unsupported e) {
+                return new Program(ast, arithmetic, null, decimals);
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true);
+            return new Program(ast, arithmetic, lookup, decimals);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the quotient of two Integers, throwing on the one overflow.
+     * Called by the code the compiler emits.
+     */
+    public static long divide(long left, long right) {
+        if (left == Long.MIN_VALUE && right == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        return left / right;
+    }
+
+    /**
+     * Returns the value to print for a reference, which is {@code nil} for
+     * {@code null}, as the interpreter prints NIL. Called by the code the
+     * compiler emits.
+     */
+    public static Object printable(Object value) {
+        return value == null ? "nil" : value;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        writer = new ClassWriter(CLASS_NAME);
+        writer.field(ACC_PUBLIC | ACC_STATIC, "$out", OUTPUT);
+        writer.field(ACC_PUBLIC | ACC_STATIC, "$arithmetic", ARITHMETIC);
+        decimals.clear();
+
+        code = writer.method(ACC_PUBLIC | ACC_STATIC, "$init", "()V");
+        for(int i = 0; i < ast.getFields().size(); i++) {
+            visit(ast.getFields().get(i));
+        }
+        code.insn(RETURN, 0);
+
+        for(int i = 0; i < ast.getMethods().size(); i++) {
+            visit(ast.getMethods().get(i));
+        }
+        for(int i = 0; i < decimals.size(); i++) {
+            writer.field(ACC_PUBLIC | ACC_STATIC, "$decimal" + i, BIG_DECIMAL);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Field ast) {
+        Environment.Type type = ast.getVariable().getType();
+        writer.field(ACC_PUBLIC | ACC_STATIC, ast.getName(), descriptor(type));
+        if(ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            coerce(ast.getValue().get().getType(), type);
+            code.field(PUTSTATIC, CLASS_NAME, ast.getName(), descriptor(type));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Method ast) {
+        Environment.Function function = ast.getFunction();
+        returnType = function.getReturnType();
+        code = writer.method(ACC_PUBLIC | ACC_STATIC, ast.getName(), descriptor(function));
+        nextSlot = 0;
+
+        blocks.push(new HashMap<>());
+        try {
+            for(int i = 0; i < ast.getParameters().size(); i++) {
+                define(ast.getParameters().get(i), function.getParameterTypes().get(i));
+            }
+            for(int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
+        }
+        finally {
+            blocks.pop();
+        }
+
+        // Methods which can complete without a RETURN give back the default
+        // value of their type, since the code may not fall off the end.
+        pushDefault(returnType);
+        code.insn(returnOpcode(returnType), -ClassWriter.size(descriptor(returnType)));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Expression ast) {
+        visit(ast.getExpression());
+        pop(ast.getExpression().getType());
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Declaration ast) {
+        Environment.Type type = ast.getVariable().getType();
+        if(ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            coerce(ast.getValue().get().getType(), type);
+        }
+        else {
+            pushDefault(type);
+        }
+        Local local = define(ast.getName(), type);
+        code.var(storeOpcode(type), local.slot, -ClassWriter.size(descriptor(type)));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Assignment ast) {
+        if(!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException();
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if(receiver.getReceiver().isPresent()) {
+            throw new Unsupported("Field access on a receiver is not supported by the JVM compiler.");
+        }
+
+        visit(ast.getValue());
+        Local local = lookup(receiver.getName());
+        if(local != null) {
+            coerce(ast.getValue().getType(), local.type);
+            code.var(storeOpcode(local.type), local.slot, -ClassWriter.size(descriptor(local.type)));
+        }
+        else {
+            Environment.Type type = receiver.getVariable().getType();
+            coerce(ast.getValue().getType(), type);
+            code.field(PUTSTATIC, CLASS_NAME, receiver.getName(), descriptor(type));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.If ast) {
+        ClassWriter.Label elseLabel = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+
+        visit(ast.getCondition());
+        code.jump(IFEQ, elseLabel, -1);
+        block(ast.getThenStatements());
+        code.jump(GOTO, end, 0);
+        code.mark(elseLabel);
+        block(ast.getElseStatements());
+        code.mark(end);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.For ast) {
+        if(Analyzer.isRange(ast.getValue())) {
+            count(ast, ((Ast.Expr.Function) ast.getValue()).getArguments());
+            return null;
+        }
+        ClassWriter.Label loop = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            visit(ast.getValue());
+            code.invoke(INVOKEINTERFACE, "java/lang/Iterable", "iterator", "()Ljava/util/Iterator;");
+            int iterator = nextSlot++;
+            code.locals(nextSlot);
+            code.var(ASTORE, iterator, -1);
+
+            Local element = define(ast.getName(), Environment.Type.INTEGER);
+            code.mark(loop);
+            code.var(ALOAD, iterator, 1);
+            code.invoke(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
+            code.jump(IFEQ, end, -1);
+            code.var(ALOAD, iterator, 1);
+            code.invoke(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
+            unbox(Environment.Type.INTEGER);
+            code.var(LSTORE, element.slot, -2);
+            for(int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
+            code.jump(GOTO, loop, 0);
+            code.mark(end);
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+
+        return null;
+    }
+
+    /**
+     * Compiles a FOR loop over a range to a counted loop. The counter, end
+     * and step live in hidden locals, and the counter is copied into the loop
+     * variable each iteration so the body may reassign it.
+     */
+    private void count(Ast.Stmt.For ast, List<Ast.Expr> arguments) {
+        ClassWriter.Label loop = new ClassWriter.Label();
+        ClassWriter.Label down = new ClassWriter.Label();
+        ClassWriter.Label body = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            int counter = nextSlot;
+            int limit = nextSlot + 2;
+            int step = nextSlot + 4;
+            nextSlot += 6;
+            code.locals(nextSlot);
+            visit(arguments.get(0));
+            code.var(LSTORE, counter, -2);
+            visit(arguments.get(1));
+            code.var(LSTORE, limit, -2);
+            if(arguments.size() == 3) {
+                visit(arguments.get(2));
+                code.invoke(INVOKESTATIC, "plc/project/Range", "step", "(J)J");
+            }
+            else {
+                code.pushLong(1);
+            }
+            code.var(LSTORE, step, -2);
+
+            // The counter stops short of the end, so it only overflows if the
+            // step does, which the add checks.
+            Local element = define(ast.getName(), Environment.Type.INTEGER);
+            code.mark(loop);
+            code.var(LLOAD, step, 2);
+            code.insn(LCONST_0, 2);
+            code.insn(LCMP, -3);
+            code.jump(IFLT, down, -1);
+            code.var(LLOAD, counter, 2);
+            code.var(LLOAD, limit, 2);
+            code.insn(LCMP, -3);
+            code.jump(IFGE, end, -1);
+            code.jump(GOTO, body, 0);
+            code.mark(down);
+            code.var(LLOAD, counter, 2);
+            code.var(LLOAD, limit, 2);
+            code.insn(LCMP, -3);
+            code.jump(IFLE, end, -1);
+            code.mark(body);
+            code.var(LLOAD, counter, 2);
+            code.var(LSTORE, element.slot, -2);
+            for(int i = 0; i < ast.getStatements().size(); i++) {
+                visit(ast.getStatements().get(i));
+            }
+            code.var(LLOAD, counter, 2);
+            code.var(LLOAD, step, 2);
+            code.invoke(INVOKESTATIC, "java/lang/Math", "addExact", "(JJ)J");
+            code.var(LSTORE, counter, -2);
+            code.jump(GOTO, loop, 0);
+            code.mark(end);
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.While ast) {
+        ClassWriter.Label loop = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+
+        code.mark(loop);
+        visit(ast.getCondition());
+        code.jump(IFEQ, end, -1);
+        block(ast.getStatements());
+        code.jump(GOTO, loop, 0);
+        code.mark(end);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Stmt.Return ast) {
+        visit(ast.getValue());
+        coerce(ast.getValue().getType(), returnType);
+        code.insn(returnOpcode(returnType), -ClassWriter.size(descriptor(returnType)));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Literal ast) {
+        Object literal = ast.getLiteral();
+        if(literal == null) {
+            code.insn(ACONST_NULL, 1);
+        }
+        else if(literal instanceof Boolean) {
+            code.insn((Boolean) literal ? ICONST_1 : ICONST_0, 1);
+        }
+        else if(literal instanceof Character) {
+            code.pushInt((Character) literal);
+        }
+        else if(literal instanceof String) {
+            code.pushString((String) literal);
+        }
+        else if(literal instanceof BigInteger) {
+            code.pushLong(((BigInteger) literal).longValueExact());
+        }
+        else if(literal instanceof BigDecimal) {
+            if(arithmetic.isDouble()) {
+                code.pushDouble(((BigDecimal) literal).doubleValue());
+            }
+            else {
+                code.field(GETSTATIC, CLASS_NAME, "$decimal" + decimals.size(), BIG_DECIMAL);
+                decimals.add((BigDecimal) literal);
+            }
+        }
+        else {
+            throw new RuntimeException("Unsupported literal " + literal + ".");
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Binary ast) {
+        String operator = ast.getOperator();
+        if(operator.equals("AND") || operator.equals("OR")) {
+            // Both operands are tested with a jump which short-circuits to the
+            // result as soon as it is decided.
+            int shortCircuit = operator.equals("AND") ? IFEQ : IFNE;
+            ClassWriter.Label decided = new ClassWriter.Label();
+            ClassWriter.Label end = new ClassWriter.Label();
+            visit(ast.getLeft());
+            code.jump(shortCircuit, decided, -1);
+            visit(ast.getRight());
+            code.jump(shortCircuit, decided, -1);
+            code.insn(shortCircuit == IFEQ ? ICONST_1 : ICONST_0, 1);
+            code.jump(GOTO, end, 0);
+            code.setDepth(code.getDepth() - 1);
+            code.mark(decided);
+            code.insn(shortCircuit == IFEQ ? ICONST_0 : ICONST_1, 1);
+            code.mark(end);
+            return null;
+        }
+
+        Environment.Type left = ast.getLeft().getType();
+        if(operator.equals("+") && ast.getType() == Environment.Type.STRING) {
+            visit(ast.getLeft());
+            stringify(left);
+            visit(ast.getRight());
+            stringify(ast.getRight().getType());
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+            return null;
+        }
+
+        String descriptor = descriptor(left);
+        String method = method(operator);
+        if(descriptor.equals(BIG_DECIMAL) && method != null) {
+            // BigDecimals are computed by the arithmetic, as the interpreter
+            // computes them.
+            code.field(GETSTATIC, CLASS_NAME, "$arithmetic", ARITHMETIC);
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            code.invoke(INVOKEVIRTUAL, "plc/project/Arithmetic", method, "(" + BIG_DECIMAL + BIG_DECIMAL + ")" + BIG_DECIMAL);
+            return null;
+        }
+
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        if(descriptor.equals("J")) {
+            // Integer arithmetic throws on overflow, where the interpreter
+            // would go on with BigIntegers (see Program#execute).
+            switch(operator) {
+                case "+":
+                    code.invoke(INVOKESTATIC, "java/lang/Math", "addExact", "(JJ)J");
+                    return null;
+                case "-":
+                    code.invoke(INVOKESTATIC, "java/lang/Math", "subtractExact", "(JJ)J");
+                    return null;
+                case "*":
+                    code.invoke(INVOKESTATIC, "java/lang/Math", "multiplyExact", "(JJ)J");
+                    return null;
+                case "/":
+                    code.invoke(INVOKESTATIC, "plc/project/JvmCompiler", "divide", "(JJ)J");
+                    return null;
+            }
+        }
+        switch(operator) {
+            case "+":
+                code.insn(DADD, -2);
+                return null;
+            case "-":
+                code.insn(DSUB, -2);
+                return null;
+            case "*":
+                code.insn(DMUL, -2);
+                return null;
+            case "/":
+                code.insn(DDIV, -2);
+                return null;
+        }
+
+        // Relational and equality operators branch on the comparison, leaving
+        // a boolean on the stack.
+        int branch;
+        switch(descriptor) {
+            case "J":
+                code.insn(LCMP, -3);
+                branch = branch(operator, 0);
+                break;
+            case "C":
+            case "Z":
+                branch = branch(operator, IF_ICMPEQ - IFEQ);
+                break;
+            case "D":
+                code.insn(operator.equals("<") || operator.equals("<=") ? DCMPG : DCMPL, -3);
+                branch = branch(operator, 0);
+                break;
+            default:
+                if(operator.equals("==") || operator.equals("!=")) {
+                    code.invoke(INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z");
+                    branch = operator.equals("==") ? IFNE : IFEQ;
+                }
+                else {
+                    code.invoke(INVOKEINTERFACE, "java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I");
+                    branch = branch(operator, 0);
+                }
+                break;
+        }
+        ClassWriter.Label isTrue = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        code.jump(branch, isTrue, branch >= IF_ICMPEQ ? -2 : -1);
+        code.insn(ICONST_0, 1);
+        code.jump(GOTO, end, 0);
+        code.setDepth(code.getDepth() - 1);
+        code.mark(isTrue);
+        code.insn(ICONST_1, 1);
+        code.mark(end);
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Access ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new Unsupported("Field access on a receiver is not supported by the JVM compiler.");
+        }
+
+        Local local = lookup(ast.getName());
+        if(local != null) {
+            code.var(loadOpcode(local.type), local.slot, ClassWriter.size(descriptor(local.type)));
+        }
+        else {
+            code.field(GETSTATIC, CLASS_NAME, ast.getName(), descriptor(ast.getVariable().getType()));
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Function ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new Unsupported("Method calls on a receiver are not supported by the JVM compiler.");
+        }
+
+        if(Analyzer.isRange(ast)) {
+            throw new Unsupported("The builtin range is only supported as the value of a FOR loop by the JVM compiler.");
+        }
+
+        Environment.Function function = ast.getFunction();
+        if(function.getJvmName().equals("System.out.println")) {
+            Environment.Type type = ast.getArguments().get(0).getType();
+            code.field(GETSTATIC, CLASS_NAME, "$out", OUTPUT);
+            visit(ast.getArguments().get(0));
+            if(isPrimitive(type)) {
+                box(type);
+            }
+            else {
+                code.invoke(INVOKESTATIC, "plc/project/JvmCompiler", "printable", "(Ljava/lang/Object;)Ljava/lang/Object;");
+            }
+            code.invoke(INVOKEVIRTUAL, "plc/project/Output", "println", "(Ljava/lang/Object;)V");
+            code.insn(ACONST_NULL, 1);
+            return null;
+        }
+
+        for(int i = 0; i < ast.getArguments().size(); i++) {
+            visit(ast.getArguments().get(i));
+            coerce(ast.getArguments().get(i).getType(), function.getParameterTypes().get(i));
+        }
+        code.invoke(INVOKESTATIC, CLASS_NAME, function.getJvmName(), descriptor(function));
+
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Spawn ast) {
+        throw new Unsupported("SPAWN is not supported by the JVM compiler.");
+    }
+
+    @Override
+    public Void visit(Ast.Expr.Await ast) {
+        throw new Unsupported("AWAIT is not supported by the JVM compiler.");
+    }
+
+    private void block(List<Ast.Stmt> statements) {
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            for(int i = 0; i < statements.size(); i++) {
+                visit(statements.get(i));
+            }
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+    }
+
+    private Local define(String name, Environment.Type type) {
+        if(blocks.peek().containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        Local local = new Local(nextSlot, type);
+        nextSlot += Math.max(1, ClassWriter.size(descriptor(type)));
+        code.locals(nextSlot);
+        blocks.peek().put(name, local);
+        return local;
+    }
+
+    private Local lookup(String name) {
+        for(Map<String, Local> block : blocks) {
+            if(block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the method of {@link Arithmetic} computing an arithmetic
+     * operator, or {@code null} for any other operator.
+     */
+    private static String method(String operator) {
+        switch(operator) {
+            case "+": return "add";
+            case "-": return "subtract";
+            case "*": return "multiply";
+            case "/": return "divide";
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns the conditional jump for a relational or equality operator. The
+     * offset selects the two-operand integer form of the jump.
+     */
+    private static int branch(String operator, int offset) {
+        switch(operator) {
+            case "<": return IFLT + offset;
+            case "<=": return IFLE + offset;
+            case ">": return IFGT + offset;
+            case ">=": return IFGE + offset;
+            case "==": return IFEQ + offset;
+            default: return IFNE + offset;
+        }
+    }
+
+    /**
+     * Converts the value on top of the stack between the representations of
+     * two types, boxing or unboxing when exactly one of them is primitive.
+     */
+    private void coerce(Environment.Type from, Environment.Type to) {
+        boolean fromPrimitive = isPrimitive(from);
+        boolean toPrimitive = isPrimitive(to);
+        if(fromPrimitive && !toPrimitive) {
+            box(from);
+        }
+        else if(!fromPrimitive && toPrimitive) {
+            unbox(to);
+        }
+    }
+
+    private void box(Environment.Type type) {
+        String descriptor = descriptor(type);
+        String wrapper = wrapper(descriptor);
+        code.invoke(INVOKESTATIC, wrapper, "valueOf", "(" + descriptor + ")L" + wrapper + ";");
+    }
+
+    private void unbox(Environment.Type type) {
+        String descriptor = descriptor(type);
+        // Integers are boxed as Longs here, but by the interpreter as
+        // BigIntegers, so either may be iterated.
+        String wrapper = descriptor.equals("J") ? "java/lang/Number" : wrapper(descriptor);
+        code.type(CHECKCAST, wrapper, 0);
+        String method = descriptor.equals("J") ? "longValue"
+                : descriptor.equals("D") ? "doubleValue"
+                : descriptor.equals("C") ? "charValue"
+                : "booleanValue";
+        code.invoke(INVOKEVIRTUAL, wrapper, method, "()" + descriptor);
+    }
+
+    private void stringify(Environment.Type type) {
+        if(!isPrimitive(type)) {
+            code.invoke(INVOKESTATIC, "plc/project/JvmCompiler", "printable", "(Ljava/lang/Object;)Ljava/lang/Object;");
+        }
+        code.invoke(INVOKESTATIC, "java/lang/String", "valueOf", "(" + printDescriptor(type) + ")Ljava/lang/String;");
+    }
+
+    private void pop(Environment.Type type) {
+        int size = ClassWriter.size(descriptor(type));
+        code.insn(size == 2 ? POP2 : POP, -size);
+    }
+
+    private void pushDefault(Environment.Type type) {
+        switch(descriptor(type)) {
+            case "D":
+                code.insn(DCONST_0, 2);
+                break;
+            case "J":
+                code.insn(LCONST_0, 2);
+                break;
+            case "C":
+            case "Z":
+                code.insn(ICONST_0, 1);
+                break;
+            default:
+                code.insn(ACONST_NULL, 1);
+                break;
+        }
+    }
+
+    private boolean isPrimitive(Environment.Type type) {
+        return descriptor(type).length() == 1;
+    }
+
+    private static String wrapper(String descriptor) {
+        switch(descriptor) {
+            case "J": return "java/lang/Long";
+            case "D": return "java/lang/Double";
+            case "C": return "java/lang/Character";
+            default: return "java/lang/Boolean";
+        }
+    }
+
+    private int loadOpcode(Environment.Type type) {
+        switch(descriptor(type)) {
+            case "D": return DLOAD;
+            case "J": return LLOAD;
+            case "C":
+            case "Z": return ILOAD;
+            default: return ALOAD;
+        }
+    }
+
+    private int storeOpcode(Environment.Type type) {
+        return loadOpcode(type) - ILOAD + ISTORE;
+    }
+
+    private int returnOpcode(Environment.Type type) {
+        switch(descriptor(type)) {
+            case "D": return DRETURN;
+            case "J": return LRETURN;
+            case "C":
+            case "Z": return IRETURN;
+            default: return ARETURN;
+        }
+    }
+
+    /**
+     * Returns the descriptor selecting the {@code println} or
+     * {@code String.valueOf} overload for a value of the given type.
+     */
+    private String printDescriptor(Environment.Type type) {
+        String descriptor = descriptor(type);
+        return isPrimitive(type) ? descriptor : "Ljava/lang/Object;";
+    }
+
+    private String descriptor(Environment.Type type) {
+        switch(type.getJvmName()) {
+            case "boolean": return "Z";
+            case "int": return "J";
+            case "double": return arithmetic.isDouble() ? "D" : BIG_DECIMAL;
+            case "char": return "C";
+            case "String": return "Ljava/lang/String;";
+            case "Comparable": return "Ljava/lang/Comparable;";
+            case "Iterable<Integer>": return "Ljava/lang/Iterable;";
+            default: return "Ljava/lang/Object;";
+        }
+    }
+
+    private String descriptor(Environment.Function function) {
+        StringBuilder builder = new StringBuilder("(");
+        for(Environment.Type type : function.getParameterTypes()) {
+            builder.append(descriptor(type));
+        }
+        return builder.append(")").append(descriptor(function.getReturnType())).toString();
+    }
+
+    private static final class Local {
+
+        private final int slot;
+        private final Environment.Type type;
+
+        private Local(int slot, Environment.Type type) {
+            this.slot = slot;
+            this.type = type;
+        }
+
+    }
+
+    /**
+     * Thrown when the source uses something this compiler does not support,
+     * in which case the program is interpreted instead.
+     */
+    private static final class Unsupported extends RuntimeException {
+
+        private Unsupported(String message) {
+            super(message);
+        }
+
+    }
+
+    /**
+     * A compiled program loaded as a hidden class, or a source to interpret
+     * if it could not be compiled.
+     */
+    public static final class Program {
+
+        private final Ast.Source source;
+        private final Arithmetic arithmetic;
+        private final MethodHandle initializer;
+        private final MethodHandle main;
+        private final MethodHandle output;
+
+        private Program(Ast.Source source, Arithmetic arithmetic, MethodHandles.Lookup lookup, List<BigDecimal> decimals) throws IllegalAccessException {
+            this.source = source;
+            this.arithmetic = arithmetic;
+            if (lookup == null) {
+                initializer = main = output = null;
+                return;
+            }
+            try {
+                initializer = lookup.findStatic(lookup.lookupClass(), "$init", MethodType.methodType(void.class));
+                main = lookup.findStatic(lookup.lookupClass(), "main", MethodType.methodType(long.class));
+                output = lookup.findStaticSetter(lookup.lookupClass(), "$out", Output.class);
+            } catch (NoSuchMethodException | NoSuchFieldException e) {
+                throw new RuntimeException("The function main/0 is not defined in this scope.");
+            }
+            try {
+                lookup.findStaticSetter(lookup.lookupClass(), "$arithmetic", Arithmetic.class).invoke(arithmetic);
+                for (int i = 0; i < decimals.size(); i++) {
+                    lookup.findStaticSetter(lookup.lookupClass(), "$decimal" + i, BigDecimal.class).invoke(decimals.get(i));
+                }
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        /**
+         * Returns whether the program was compiled, rather than being
+         * interpreted.
+         */
+        public boolean isCompiled() {
+            return main != null;
+        }
+
+        /**
+         * Executes the program with output written to standard output.
+         */
+        public Environment.PlcObject execute() {
+            return execute(Output.of(System.out));
+        }
+
+        /**
+         * Initializes the fields and invokes {@code main/0}, writing the
+         * output of {@code print} to the given output, and returning its
+         * result as {@link Interpreter#visit(Ast.Source)} would. What the
+         * compiled code prints is held in memory until it finishes. If Integer
+         * arithmetic overflows or is divided by zero, or the stack overflows,
+         * that output is discarded and the program is run in the interpreter
+         * instead, so that it goes on with BigIntegers and tail calls in
+         * constant stack, or fails, as the interpreter does.
+         */
+        public Environment.PlcObject execute(Output out) {
+            if (main == null) {
+                return interpret(out);
+            }
+            Output.Memory printed = Output.memory();
+            long result;
+            try {
+                output.invokeExact((Output) printed);
+                initializer.invokeExact();
+                result = (long) main.invokeExact();
+            } catch (ArithmeticException | StackOverflowError e) {
+                return interpret(out);
+            } catch (RuntimeException | Error e) {
+                out.append(printed);
+                throw e;
+            } catch (Throwable t) {
+                out.append(printed);
+                throw new RuntimeException(t);
+            }
+            out.append(printed);
+            out.flush();
+            return Environment.create(BigInteger.valueOf(result));
+        }
+
+        private Environment.PlcObject interpret(Output out) {
+            Interpreter interpreter = new Interpreter(null, null, out);
+            interpreter.setArithmetic(arithmetic);
+            return interpreter.visit(source);
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A load test for the {@link ScriptExecutor}. Submits jobs drawn from a set of
+ * scripts, more of them than the cache holds so that some are evicted, with a
+ * few scripts far more popular than the rest. At most {@code inFlight} jobs
+ * are outstanding at once, so latencies measure execution rather than the
+ * queue. Every output is checked, and the executor's statistics reported.
+ *
+ * Usage: {@code LoadTest [jobs] [scripts] [cacheSize] [inFlight]}.
+ */
+public final class LoadTest {
+
+    public static void main(String[] args) {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int scripts = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int cacheSize = args.length > 2 ? Integer.parseInt(args[2]) : 48;
+        int inFlight = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < scripts; i++) {
+            sources.add(String.join("\n",
+                    "LET count: Integer = " + (i % 10 + 1) + ";",
+                    "DEF main(): Integer DO",
+                    "    LET text: String = input();",
+                    "    LET i: Integer = 0;",
+                    "    WHILE i < count DO",
+                    "        print(text);",
+                    "        i = i + 1;",
+                    "    END",
+                    "    RETURN " + i + ";",
+                    "END"));
+        }
+
+        try (ScriptExecutor executor = new ScriptExecutor(cacheSize)) {
+            System.out.println("Running " + jobs + " jobs over " + scripts + " scripts on "
+                    + (executor.isVirtual() ? "virtual" : "platform") + " threads.");
+            Random random = new Random(0);
+            Semaphore permits = new Semaphore(inFlight);
+            int[] chosen = new int[jobs];
+            List<CompletableFuture<ScriptExecutor.Result>> results = new ArrayList<>(jobs);
+            for (int i = 0; i < jobs; i++) {
+                double r = random.nextDouble();
+                chosen[i] = (int) (scripts * r * r * r);
+                permits.acquireUninterruptibly();
+                results.add(executor.submit(sources.get(chosen[i]), "job " + i).whenComplete((result, e) -> permits.release()));
+            }
+
+            int mismatches = 0;
+            for (int i = 0; i < jobs; i++) {
+                ScriptExecutor.Result result = results.get(i).join();
+                String expected = ("job " + i + System.lineSeparator()).repeat(chosen[i] % 10 + 1);
+                if (result.getError() != null || !result.getOutput().equals(expected)
+                        || !result.getValue().equals(BigInteger.valueOf(chosen[i]))) {
+                    mismatches++;
+                }
+            }
+            System.out.println("mismatched outputs: " + mismatches);
+            System.out.println(executor.getStatistics());
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package plc.project;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of a pure method, keyed by the values of its arguments, in a
+ * bounded cache evicting the least recently used. Counts hits, misses and
+ * evictions. A memo belongs to a single execution and is not thread-safe.
+ */
+public final class Memo {
+
+    private final String name;
+    private final Map<List<Object>, Environment.PlcObject> results;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public Memo(String name, int capacity) {
+        this.name = name;
+        this.results = new LinkedHashMap<List<Object>, Environment.PlcObject>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Environment.PlcObject> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the result for the arguments, or {@code null} if there is none.
+     */
+    public Environment.PlcObject get(List<Object> arguments) {
+        Environment.PlcObject result = results.get(arguments);
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    public void put(List<Object> arguments, Environment.PlcObject result) {
+        results.put(arguments, result);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return results.size();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": hits=" + hits + " misses=" + misses + " evictions=" + evictions + " size=" + results.size();
+    }
+
+}
@@ -0,0 +1,899 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Executable nodes produced by the {@link NodeCompiler}. Where the AST is
+ * walked by a visitor, nodes execute themselves against a frame of local
+ * variable slots.
+ *
+ * Nodes specialize on the values they actually observe. A binary operator
+ * starts out uninitialized, replaces itself with a node for the operand types
+ * seen on its first execution (such as {@link IntegerArithmetic}), and
+ * replaces itself again with a {@link Generic} node if those types ever
+ * change. Replacement goes through the parent, so every node knows the node
+ * which owns it.
+ */
+public abstract class Node {
+
+    /**
+     * The unwrapped value of {@link Environment#NIL}.
+     */
+    public static final Object NIL = Environment.NIL.getValue();
+
+    /**
+     * Returned by a {@link Stmt.TailCall} once it has rebound the frame, so the
+     * enclosing method runs its statements again.
+     */
+    static final Object TAIL_CALL = new Object();
+
+    private Node parent = null;
+
+    protected final <T extends Node> T adopt(T child) {
+        if (child != null) {
+            ((Node) child).parent = this;
+        }
+        return child;
+    }
+
+    protected final <T extends Node> T[] adopt(T[] children) {
+        for (T child : children) {
+            adopt(child);
+        }
+        return children;
+    }
+
+    /**
+     * Replaces this node with the given node in its parent.
+     */
+    protected final <T extends Node> T replace(T replacement) {
+        parent.replaceChild(this, replacement);
+        ((Node) replacement).parent = parent;
+        return replacement;
+    }
+
+    /**
+     * Replaces a direct child of this node; overridden by nodes whose children
+     * may rewrite themselves.
+     */
+    protected void replaceChild(Node child, Node replacement) {
+        throw new IllegalStateException("Node " + getClass().getSimpleName() + " cannot replace its children.");
+    }
+
+    public static Object unwrap(Environment.PlcObject object) {
+        return object.getValue();
+    }
+
+    public static Environment.PlcObject wrap(Object value) {
+        return value == NIL ? Environment.NIL : Environment.create(value);
+    }
+
+    /**
+     * Executes a block of statements, returning the value of a {@code RETURN}
+     * reached within it or {@code null} if the block completes normally.
+     */
+    static Object execute(Stmt[] statements, Object[] frame) {
+        for (Stmt statement : statements) {
+            Object result = statement.execute(frame);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public static final class Program extends Node {
+
+        private final Scope scope;
+        private final Output out;
+        private final Environment.Variable[] fields;
+        private final Expr[] initializers;
+
+        /**
+         * Creates a program whose {@code print} writes to the given output,
+         * or {@code null} if it prints through an enclosing scope.
+         */
+        public Program(Scope scope, Output out, Environment.Variable[] fields, Expr[] initializers) {
+            this.scope = scope;
+            this.out = out;
+            this.fields = fields;
+            this.initializers = adopt(initializers);
+        }
+
+        public Scope getScope() {
+            return scope;
+        }
+
+        /**
+         * Initializes the fields and invokes {@code main/0}, returning its
+         * result as {@link Interpreter#visit(Ast.Source)} would, and flushing
+         * the output once it finishes.
+         */
+        public Environment.PlcObject execute() {
+            try {
+                Object[] frame = new Object[0];
+                for (int i = 0; i < fields.length; i++) {
+                    if (initializers[i] != null) {
+                        fields[i].setValue(wrap(initializers[i].execute(frame)));
+                    }
+                }
+                return scope.lookupFunction("main", 0).invoke();
+            } finally {
+                if (out != null) {
+                    out.flush();
+                }
+            }
+        }
+
+        @Override
+        protected void replaceChild(Node child, Node replacement) {
+            for (int i = 0; i < initializers.length; i++) {
+                if (initializers[i] == child) {
+                    initializers[i] = (Expr) replacement;
+                }
+            }
+        }
+
+    }
+
+    public static final class Method extends Node {
+
+        private final String name;
+        private final int arity;
+        private final int frameSize;
+        private final Stmt[] statements;
+        private final Entry entry = new Entry();
+
+        public Method(String name, int arity, int frameSize, Stmt[] statements) {
+            this.name = name;
+            this.arity = arity;
+            this.frameSize = frameSize;
+            this.statements = adopt(statements);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public int getFrameSize() {
+            return frameSize;
+        }
+
+        /**
+         * The invoker registered for this method in the global scope.
+         */
+        public Environment.Invoker getEntry() {
+            return entry;
+        }
+
+        /**
+         * Runs the method in a frame whose first slots hold the arguments.
+         */
+        public Object call(Object[] frame) {
+            Object result = execute(statements, frame);
+            while (result == TAIL_CALL) {
+                result = execute(statements, frame);
+            }
+            return result != null ? result : NIL;
+        }
+
+        /**
+         * Runs the method in a fresh frame, returning the value of a
+         * {@code RETURN} or {@code null} if the statements complete without
+         * one.
+         */
+        public Object execute() {
+            return Node.execute(statements, new Object[frameSize]);
+        }
+
+        private final class Entry extends Environment.Invoker {
+
+            @Override
+            public Environment.PlcObject invoke(Environment.PlcObject[] arguments) {
+                Object[] frame = new Object[frameSize];
+                for (int i = 0; i < arguments.length; i++) {
+                    frame[i] = unwrap(arguments[i]);
+                }
+                return wrap(call(frame));
+            }
+
+            @Override
+            public Environment.PlcObject invoke() {
+                return wrap(call(new Object[frameSize]));
+            }
+
+            @Override
+            public Environment.PlcObject invoke(Environment.PlcObject a0) {
+                Object[] frame = new Object[frameSize];
+                frame[0] = unwrap(a0);
+                return wrap(call(frame));
+            }
+
+            @Override
+            public Environment.PlcObject invoke(Environment.PlcObject a0, Environment.PlcObject a1) {
+                Object[] frame = new Object[frameSize];
+                frame[0] = unwrap(a0);
+                frame[1] = unwrap(a1);
+                return wrap(call(frame));
+            }
+
+            private Method method() {
+                return Method.this;
+            }
+
+            @Override
+            public String toString() {
+                return "Node.Method{" +
+                        "name='" + name + '\'' +
+                        ", arity=" + arity +
+                        ", frameSize=" + frameSize +
+                        '}';
+            }
+
+        }
+
+    }
+
+    public static abstract class Stmt extends Node {
+
+        /**
+         * Executes the statement, returning the value of a {@code RETURN}
+         * reached within it or {@code null} if it completes normally.
+         */
+        public abstract Object execute(Object[] frame);
+
+        public static final class Expression extends Stmt {
+
+            private Expr expression;
+
+            public Expression(Expr expression) {
+                this.expression = adopt(expression);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                expression.execute(frame);
+                return null;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                expression = (Expr) replacement;
+            }
+
+        }
+
+        public static final class WriteLocal extends Stmt {
+
+            private final int slot;
+            private Expr value;
+
+            public WriteLocal(int slot, Expr value) {
+                this.slot = slot;
+                this.value = adopt(value);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                frame[slot] = value.execute(frame);
+                return null;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                value = (Expr) replacement;
+            }
+
+        }
+
+        public static final class WriteGlobal extends Stmt {
+
+            private final Environment.Variable variable;
+            private Expr value;
+
+            public WriteGlobal(Environment.Variable variable, Expr value) {
+                this.variable = variable;
+                this.value = adopt(value);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                variable.setValue(wrap(value.execute(frame)));
+                return null;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                value = (Expr) replacement;
+            }
+
+        }
+
+        public static final class If extends Stmt {
+
+            private Expr condition;
+            private final Stmt[] thenStatements;
+            private final Stmt[] elseStatements;
+
+            public If(Expr condition, Stmt[] thenStatements, Stmt[] elseStatements) {
+                this.condition = adopt(condition);
+                this.thenStatements = adopt(thenStatements);
+                this.elseStatements = adopt(elseStatements);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                if (Operators.requireType(Boolean.class, condition.execute(frame))) {
+                    return Node.execute(thenStatements, frame);
+                }
+                return Node.execute(elseStatements, frame);
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                condition = (Expr) replacement;
+            }
+
+        }
+
+        public static final class For extends Stmt {
+
+            private final int slot;
+            private Expr value;
+            private final Stmt[] statements;
+
+            public For(int slot, Expr value, Stmt[] statements) {
+                this.slot = slot;
+                this.value = adopt(value);
+                this.statements = adopt(statements);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                Object iterable = value.execute(frame);
+                if (iterable instanceof Range && ((Range) iterable).isLong()) {
+                    return count((Range) iterable, frame);
+                }
+                for (Object element : Operators.requireType(Iterable.class, iterable)) {
+                    frame[slot] = ((Environment.PlcObject) element).getValue();
+                    Object result = Node.execute(statements, frame);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
+
+            /**
+             * Counts through a range with a primitive counter rather than
+             * its iterator.
+             */
+            private Object count(Range range, Object[] frame) {
+                long end = range.getEnd().longValue();
+                long step = range.getStep().longValue();
+                for (long i = range.getStart().longValue(); step > 0 ? i < end : i > end; i += step) {
+                    frame[slot] = BigInteger.valueOf(i);
+                    Object result = Node.execute(statements, frame);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                value = (Expr) replacement;
+            }
+
+        }
+
+        public static final class While extends Stmt {
+
+            private Expr condition;
+            private final Stmt[] statements;
+
+            public While(Expr condition, Stmt[] statements) {
+                this.condition = adopt(condition);
+                this.statements = adopt(statements);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                while (Operators.requireType(Boolean.class, condition.execute(frame))) {
+                    Object result = Node.execute(statements, frame);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                condition = (Expr) replacement;
+            }
+
+        }
+
+        /**
+         * A {@code RETURN} of a call to the enclosing method itself. The
+         * arguments replace the parameters in the current frame and the method
+         * starts over, so self tail recursion runs in constant stack.
+         */
+        public static final class TailCall extends Stmt {
+
+            private final Expr[] arguments;
+
+            public TailCall(Expr[] arguments) {
+                this.arguments = adopt(arguments);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                if (arguments.length == 1) {
+                    frame[0] = arguments[0].execute(frame);
+                    return TAIL_CALL;
+                }
+                Object[] values = new Object[arguments.length];
+                for (int i = 0; i < arguments.length; i++) {
+                    values[i] = arguments[i].execute(frame);
+                }
+                System.arraycopy(values, 0, frame, 0, values.length);
+                return TAIL_CALL;
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                for (int i = 0; i < arguments.length; i++) {
+                    if (arguments[i] == child) {
+                        arguments[i] = (Expr) replacement;
+                    }
+                }
+            }
+
+        }
+
+        public static final class Return extends Stmt {
+
+            private Expr value;
+
+            public Return(Expr value) {
+                this.value = adopt(value);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return value.execute(frame);
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                value = (Expr) replacement;
+            }
+
+        }
+
+    }
+
+    public static abstract class Expr extends Node {
+
+        public abstract Object execute(Object[] frame);
+
+        public static final class Literal extends Expr {
+
+            private final Object value;
+
+            public Literal(Object value) {
+                this.value = value;
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return value;
+            }
+
+        }
+
+        public static final class ReadLocal extends Expr {
+
+            private final int slot;
+
+            public ReadLocal(int slot) {
+                this.slot = slot;
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return frame[slot];
+            }
+
+        }
+
+        public static final class ReadGlobal extends Expr {
+
+            private final Environment.Variable variable;
+
+            public ReadGlobal(Environment.Variable variable) {
+                this.variable = variable;
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return variable.getValue().getValue();
+            }
+
+        }
+
+        public static final class And extends Expr {
+
+            private Expr left;
+            private Expr right;
+
+            public And(Expr left, Expr right) {
+                this.left = adopt(left);
+                this.right = adopt(right);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return Operators.requireType(Boolean.class, left.execute(frame))
+                        && Operators.requireType(Boolean.class, right.execute(frame));
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                if (left == child) {
+                    left = (Expr) replacement;
+                } else {
+                    right = (Expr) replacement;
+                }
+            }
+
+        }
+
+        public static final class Or extends Expr {
+
+            private Expr left;
+            private Expr right;
+
+            public Or(Expr left, Expr right) {
+                this.left = adopt(left);
+                this.right = adopt(right);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                return Operators.requireType(Boolean.class, left.execute(frame))
+                        || Operators.requireType(Boolean.class, right.execute(frame));
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                if (left == child) {
+                    left = (Expr) replacement;
+                } else {
+                    right = (Expr) replacement;
+                }
+            }
+
+        }
+
+        /**
+         * Calls a global function. The resolved function is cached until the
+         * function tables change, and calls to other node-compiled methods
+         * evaluate their arguments directly into the callee's frame instead of
+         * wrapping them in {@link Environment.PlcObject}s.
+         */
+        public static final class Call extends Expr {
+
+            private final Scope scope;
+            private final String name;
+            private final Expr[] arguments;
+            private int version = -1;
+            private Environment.Function function = null;
+            private Method target = null;
+
+            public Call(Scope scope, String name, Expr[] arguments) {
+                this.scope = scope;
+                this.name = name;
+                this.arguments = adopt(arguments);
+            }
+
+            @Override
+            public Object execute(Object[] frame) {
+                int current = scope.getFunctionVersion();
+                if (version != current) {
+                    function = scope.lookupFunction(name, arguments.length);
+                    target = function.getInvoker() instanceof Method.Entry
+                            ? ((Method.Entry) function.getInvoker()).method()
+                            : null;
+                    version = current;
+                }
+                if (target != null) {
+                    Object[] callee = new Object[target.getFrameSize()];
+                    for (int i = 0; i < arguments.length; i++) {
+                        callee[i] = arguments[i].execute(frame);
+                    }
+                    return target.call(callee);
+                }
+                switch (arguments.length) {
+                    case 0:
+                        return unwrap(function.invoke());
+                    case 1:
+                        return unwrap(function.invoke(wrap(arguments[0].execute(frame))));
+                    case 2:
+                        return unwrap(function.invoke(wrap(arguments[0].execute(frame)), wrap(arguments[1].execute(frame))));
+                    default:
+                        Environment.PlcObject[] objects = new Environment.PlcObject[arguments.length];
+                        for (int i = 0; i < arguments.length; i++) {
+                            objects[i] = wrap(arguments[i].execute(frame));
+                        }
+                        return unwrap(function.invoke(objects));
+                }
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                for (int i = 0; i < arguments.length; i++) {
+                    if (arguments[i] == child) {
+                        arguments[i] = (Expr) replacement;
+                    }
+                }
+            }
+
+        }
+
+        /**
+         * Base class for the arithmetic, relational and equality operators.
+         * Both operands are evaluated before the operator is applied, so a
+         * node that rewrites itself can finish the operation with the values
+         * it has already computed.
+         */
+        public static abstract class Binary extends Expr {
+
+            protected static final int ADD = 0, SUBTRACT = 1, MULTIPLY = 2, DIVIDE = 3,
+                    LESS = 4, LESS_EQUAL = 5, GREATER = 6, GREATER_EQUAL = 7, EQUAL = 8, NOT_EQUAL = 9;
+
+            protected final String operator;
+            protected final int code;
+            protected final Arithmetic arithmetic;
+            protected Expr left;
+            protected Expr right;
+
+            protected Binary(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                this.operator = operator;
+                this.code = code(operator);
+                this.arithmetic = arithmetic;
+                this.left = adopt(left);
+                this.right = adopt(right);
+            }
+
+            /**
+             * Creates the uninitialized node for an operator.
+             */
+            public static Binary create(String operator, Expr left, Expr right) {
+                return create(operator, left, right, Arithmetic.DEFAULT);
+            }
+
+            /**
+             * Creates the uninitialized node for an operator computing
+             * Decimals with the given arithmetic.
+             */
+            public static Binary create(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                return new Uninitialized(operator, left, right, arithmetic);
+            }
+
+            private static int code(String operator) {
+                switch (operator) {
+                    case "+": return ADD;
+                    case "-": return SUBTRACT;
+                    case "*": return MULTIPLY;
+                    case "/": return DIVIDE;
+                    case "<": return LESS;
+                    case "<=": return LESS_EQUAL;
+                    case ">": return GREATER;
+                    case ">=": return GREATER_EQUAL;
+                    case "==": return EQUAL;
+                    case "!=": return NOT_EQUAL;
+                    default: throw new RuntimeException("Unknown operator " + operator + ".");
+                }
+            }
+
+            @Override
+            public final Object execute(Object[] frame) {
+                Object l = left.execute(frame);
+                Object r = right.execute(frame);
+                return apply(l, r);
+            }
+
+            protected abstract Object apply(Object left, Object right);
+
+            /**
+             * Rewrites this node to the generic form after observing operands
+             * it does not handle, and applies the operator to them.
+             */
+            protected final Object generalize(Object l, Object r) {
+                return replace(new Generic(operator, left, right, arithmetic)).apply(l, r);
+            }
+
+            protected static boolean compare(int code, int comparison) {
+                switch (code) {
+                    case LESS: return comparison < 0;
+                    case LESS_EQUAL: return comparison <= 0;
+                    case GREATER: return comparison > 0;
+                    default: return comparison >= 0;
+                }
+            }
+
+            @Override
+            protected void replaceChild(Node child, Node replacement) {
+                if (left == child) {
+                    left = (Expr) replacement;
+                } else {
+                    right = (Expr) replacement;
+                }
+            }
+
+            @Override
+            public String toString() {
+                return getClass().getSimpleName() + "{" +
+                        "operator='" + operator + '\'' +
+                        ", left=" + left +
+                        ", right=" + right +
+                        '}';
+            }
+
+        }
+
+        public static final class Uninitialized extends Binary {
+
+            private Uninitialized(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                Binary specialized;
+                if (l instanceof BigInteger && r instanceof BigInteger && code <= GREATER_EQUAL) {
+                    specialized = code <= DIVIDE
+                            ? new IntegerArithmetic(operator, left, right, arithmetic)
+                            : new IntegerComparison(operator, left, right, arithmetic);
+                } else if (l instanceof BigDecimal && r instanceof BigDecimal && code <= DIVIDE) {
+                    specialized = new DecimalArithmetic(operator, left, right, arithmetic);
+                } else if (l instanceof Double && r instanceof Double) {
+                    specialized = new DoubleArithmetic(operator, left, right, arithmetic);
+                } else if ((l instanceof String || l instanceof Rope) && (r instanceof String || r instanceof Rope) && code == ADD) {
+                    specialized = new Concatenate(operator, left, right, arithmetic);
+                } else {
+                    specialized = new Generic(operator, left, right, arithmetic);
+                }
+                return replace(specialized).apply(l, r);
+            }
+
+        }
+
+        public static final class IntegerArithmetic extends Binary {
+
+            private IntegerArithmetic(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                if (!(l instanceof BigInteger) || !(r instanceof BigInteger)) {
+                    return generalize(l, r);
+                }
+                switch (code) {
+                    case ADD: return ((BigInteger) l).add((BigInteger) r);
+                    case SUBTRACT: return ((BigInteger) l).subtract((BigInteger) r);
+                    case MULTIPLY: return ((BigInteger) l).multiply((BigInteger) r);
+                    default: return ((BigInteger) l).divide((BigInteger) r);
+                }
+            }
+
+        }
+
+        public static final class IntegerComparison extends Binary {
+
+            private IntegerComparison(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                if (!(l instanceof BigInteger) || !(r instanceof BigInteger)) {
+                    return generalize(l, r);
+                }
+                return compare(code, ((BigInteger) l).compareTo((BigInteger) r));
+            }
+
+        }
+
+        public static final class DecimalArithmetic extends Binary {
+
+            private DecimalArithmetic(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                if (!(l instanceof BigDecimal) || !(r instanceof BigDecimal)) {
+                    return generalize(l, r);
+                }
+                switch (code) {
+                    case ADD: return arithmetic.add((BigDecimal) l, (BigDecimal) r);
+                    case SUBTRACT: return arithmetic.subtract((BigDecimal) l, (BigDecimal) r);
+                    case MULTIPLY: return arithmetic.multiply((BigDecimal) l, (BigDecimal) r);
+                    default: return arithmetic.divide((BigDecimal) l, (BigDecimal) r);
+                }
+            }
+
+        }
+
+        public static final class DoubleArithmetic extends Binary {
+
+            private DoubleArithmetic(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                if (!(l instanceof Double) || !(r instanceof Double)) {
+                    return generalize(l, r);
+                }
+                double a = (Double) l;
+                double b = (Double) r;
+                switch (code) {
+                    case ADD: return a + b;
+                    case SUBTRACT: return a - b;
+                    case MULTIPLY: return a * b;
+                    case DIVIDE: return a / b;
+                    case LESS: return a < b;
+                    case LESS_EQUAL: return a <= b;
+                    case GREATER: return a > b;
+                    case GREATER_EQUAL: return a >= b;
+                    case EQUAL: return a == b;
+                    default: return a != b;
+                }
+            }
+
+        }
+
+        public static final class Concatenate extends Binary {
+
+            private Concatenate(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                if (!(l instanceof String || l instanceof Rope) || !(r instanceof String || r instanceof Rope)) {
+                    return generalize(l, r);
+                }
+                return Rope.concat(l, r);
+            }
+
+        }
+
+        public static final class Generic extends Binary {
+
+            private Generic(String operator, Expr left, Expr right, Arithmetic arithmetic) {
+                super(operator, left, right, arithmetic);
+            }
+
+            @Override
+            protected Object apply(Object l, Object r) {
+                return Operators.apply(operator, l, r, arithmetic);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,340 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed {@link Ast.Source} into a tree of executable
+ * {@link Node}s. Local variables are resolved to slots in a frame at compile
+ * time, while fields and functions are bound through the global {@link Scope}
+ * exactly as in the {@link Interpreter}.
+ */
+public final class NodeCompiler implements Ast.Visitor<Node> {
+
+    private final Scope scope;
+    private final Output out;
+    private final Arithmetic arithmetic;
+    private final Deque<Map<String, Integer>> blocks = new ArrayDeque<>();
+    private int nextSlot = 0;
+    private int frameSize = 0;
+    private Ast.Method method = null;
+
+    public NodeCompiler(Scope parent) {
+        this(parent, Output.of(System.out));
+    }
+
+    /**
+     * Creates a compiler for programs whose {@code print} writes to the given
+     * output, which is flushed once each execution finishes.
+     */
+    public NodeCompiler(Scope parent, Output out) {
+        this(parent, out, Arithmetic.DEFAULT);
+    }
+
+    private NodeCompiler(Scope parent, Output out, Arithmetic arithmetic) {
+        scope = new Scope(parent);
+        this.out = out;
+        this.arithmetic = arithmetic;
+        if (out == null) {
+            return;
+        }
+        scope.defineFunction("print", 1, args -> {
+            out.println(args.get(0).getValue());
+            return Environment.NIL;
+        });
+        scope.defineFunction("range", 2, args -> Environment.create(new Range(
+                Operators.requireType(BigInteger.class, args.get(0).getValue()), Operators.requireType(BigInteger.class, args.get(1).getValue()))));
+        scope.defineFunction("range", 3, args -> Environment.create(new Range(
+                Operators.requireType(BigInteger.class, args.get(0).getValue()), Operators.requireType(BigInteger.class, args.get(1).getValue()), Operators.requireType(BigInteger.class, args.get(2).getValue()))));
+    }
+
+    /**
+     * Returns a compiler for code running within an {@link Interpreter},
+     * binding even the builtins through its scope, so that compiled code
+     * prints to the interpreter's output, and computing Decimals with the
+     * interpreter's arithmetic.
+     */
+    public static NodeCompiler within(Scope scope, Arithmetic arithmetic) {
+        return new NodeCompiler(scope, null, arithmetic);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    @Override
+    public Node.Program visit(Ast.Source ast) {
+        Environment.Variable[] fields = new Environment.Variable[ast.getFields().size()];
+        Node.Expr[] initializers = new Node.Expr[ast.getFields().size()];
+        for(int i = 0; i < ast.getFields().size(); i++) {
+            initializers[i] = (Node.Expr) visit(ast.getFields().get(i));
+            fields[i] = scope.lookupVariable(ast.getFields().get(i).getName());
+        }
+        for(int i = 0; i < ast.getMethods().size(); i++) {
+            visit(ast.getMethods().get(i));
+        }
+
+        return new Node.Program(scope, out, fields, initializers);
+    }
+
+    /**
+     * Defines the field's variable and returns the node for its initializer,
+     * or {@code null} if it has none.
+     */
+    @Override
+    public Node visit(Ast.Field ast) {
+        Node initializer = ast.getValue().isPresent() ? visit(ast.getValue().get()) : null;
+        scope.defineVariable(ast.getName(), Environment.NIL);
+
+        return initializer;
+    }
+
+    @Override
+    public Node.Method visit(Ast.Method ast) {
+        nextSlot = 0;
+        frameSize = 0;
+        Node.Stmt[] statements;
+
+        method = ast;
+        blocks.push(new HashMap<>());
+        try {
+            for(int i = 0; i < ast.getParameters().size(); i++) {
+                define(ast.getParameters().get(i));
+            }
+            statements = compile(ast.getStatements());
+        }
+        finally {
+            blocks.pop();
+            method = null;
+        }
+
+        Node.Method method = new Node.Method(ast.getName(), ast.getParameters().size(), frameSize, statements);
+        scope.defineFunction(ast.getName(), ast.getParameters().size(), method.getEntry());
+
+        return method;
+    }
+
+    /**
+     * Compiles a single WHILE loop as the body of a method without
+     * parameters. Variables declared outside the loop are resolved through
+     * the parent scope, so a loop compiled against a running interpreter's
+     * scope continues with the interpreter's variables.
+     */
+    public Node.Method compileLoop(Ast.Stmt.While ast) {
+        nextSlot = 0;
+        frameSize = 0;
+        Node.Stmt[] statements;
+
+        blocks.push(new HashMap<>());
+        try {
+            statements = new Node.Stmt[] { (Node.Stmt) visit(ast) };
+        }
+        finally {
+            blocks.pop();
+        }
+
+        return new Node.Method("WHILE", 0, frameSize, statements);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Expression ast) {
+        return new Node.Stmt.Expression((Node.Expr) visit(ast.getExpression()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Declaration ast) {
+        Node.Expr value = ast.getValue().isPresent()
+                ? (Node.Expr) visit(ast.getValue().get())
+                : new Node.Expr.Literal(Node.NIL);
+
+        return new Node.Stmt.WriteLocal(define(ast.getName()), value);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Assignment ast) {
+        if(!(ast.getReceiver() instanceof Ast.Expr.Access)) {
+            throw new RuntimeException();
+        }
+        Ast.Expr.Access receiver = (Ast.Expr.Access) ast.getReceiver();
+        if(receiver.getReceiver().isPresent()) {
+            throw new RuntimeException("Field access on a receiver is not supported by the node engine.");
+        }
+
+        Node.Expr value = (Node.Expr) visit(ast.getValue());
+        Integer slot = lookup(receiver.getName());
+        if(slot != null) {
+            return new Node.Stmt.WriteLocal(slot, value);
+        }
+        return new Node.Stmt.WriteGlobal(scope.lookupVariable(receiver.getName()), value);
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.If ast) {
+        Node.Expr condition = (Node.Expr) visit(ast.getCondition());
+
+        return new Node.Stmt.If(condition, block(ast.getThenStatements()), block(ast.getElseStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.For ast) {
+        Node.Expr value = (Node.Expr) visit(ast.getValue());
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            int slot = define(ast.getName());
+            return new Node.Stmt.For(slot, value, compile(ast.getStatements()));
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.While ast) {
+        Node.Expr condition = (Node.Expr) visit(ast.getCondition());
+
+        return new Node.Stmt.While(condition, block(ast.getStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Stmt.Return ast) {
+        Ast.Expr value = ast.getValue();
+        while(value instanceof Ast.Expr.Group) {
+            value = ((Ast.Expr.Group) value).getExpression();
+        }
+        // Within a method, its own name and arity always resolve to the method
+        // itself, so a self call in tail position can restart it in place.
+        if(method != null && value instanceof Ast.Expr.Function) {
+            Ast.Expr.Function call = (Ast.Expr.Function) value;
+            if(!call.getReceiver().isPresent() && call.getName().equals(method.getName())
+                    && call.getArguments().size() == method.getParameters().size()) {
+                Node.Expr[] arguments = new Node.Expr[call.getArguments().size()];
+                for(int i = 0; i < arguments.length; i++) {
+                    arguments[i] = (Node.Expr) visit(call.getArguments().get(i));
+                }
+                return new Node.Stmt.TailCall(arguments);
+            }
+        }
+        return new Node.Stmt.Return((Node.Expr) visit(ast.getValue()));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Literal ast) {
+        if(ast.getLiteral() instanceof BigDecimal) {
+            return new Node.Expr.Literal(arithmetic.decimal((BigDecimal) ast.getLiteral()));
+        }
+        return new Node.Expr.Literal(ast.getLiteral() == null ? Node.NIL : ast.getLiteral());
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Binary ast) {
+        Node.Expr left = (Node.Expr) visit(ast.getLeft());
+        Node.Expr right = (Node.Expr) visit(ast.getRight());
+
+        switch(ast.getOperator()) {
+            case "AND":
+                return new Node.Expr.And(left, right);
+            case "OR":
+                return new Node.Expr.Or(left, right);
+            default:
+                return Node.Expr.Binary.create(ast.getOperator(), left, right, arithmetic);
+        }
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Access ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new RuntimeException("Field access on a receiver is not supported by the node engine.");
+        }
+
+        Integer slot = lookup(ast.getName());
+        if(slot != null) {
+            return new Node.Expr.ReadLocal(slot);
+        }
+        return new Node.Expr.ReadGlobal(scope.lookupVariable(ast.getName()));
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Function ast) {
+        if(ast.getReceiver().isPresent()) {
+            throw new RuntimeException("Method calls on a receiver are not supported by the node engine.");
+        }
+
+        Node.Expr[] arguments = new Node.Expr[ast.getArguments().size()];
+        for(int i = 0; i < arguments.length; i++) {
+            arguments[i] = (Node.Expr) visit(ast.getArguments().get(i));
+        }
+        return new Node.Expr.Call(scope, ast.getName(), arguments);
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Spawn ast) {
+        throw new RuntimeException("SPAWN is not supported by the node engine.");
+    }
+
+    @Override
+    public Node visit(Ast.Expr.Await ast) {
+        throw new RuntimeException("AWAIT is not supported by the node engine.");
+    }
+
+    /**
+     * Compiles statements in a new block, whose slots are reused once the
+     * block ends.
+     */
+    private Node.Stmt[] block(List<Ast.Stmt> statements) {
+        int saved = nextSlot;
+
+        blocks.push(new HashMap<>());
+        try {
+            return compile(statements);
+        }
+        finally {
+            blocks.pop();
+            nextSlot = saved;
+        }
+    }
+
+    private Node.Stmt[] compile(List<Ast.Stmt> statements) {
+        Node.Stmt[] nodes = new Node.Stmt[statements.size()];
+        for(int i = 0; i < nodes.length; i++) {
+            nodes[i] = (Node.Stmt) visit(statements.get(i));
+        }
+        return nodes;
+    }
+
+    private int define(String name) {
+        if(blocks.peek().containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        int slot = nextSlot++;
+        frameSize = Math.max(frameSize, nextSlot);
+        blocks.peek().put(name, slot);
+        return slot;
+    }
+
+    /**
+     * Returns the slot of a local variable, or {@code null} if the name refers
+     * to a field.
+     */
+    private Integer lookup(String name) {
+        for(Map<String, Integer> block : blocks) {
+            if(block.containsKey(name)) {
+                return block.get(name);
+            }
+        }
+        return null;
+    }
+
+}
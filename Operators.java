@@ -0,0 +1,192 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * The semantics of the binary operators on runtime values, shared by every
+ * execution engine so they all agree on the result of an operation.
+ *
+ * Values are the unwrapped Java objects held by {@link Environment.PlcObject}s:
+ * {@link BigInteger}, {@link BigDecimal} or {@link Double} (see
+ * {@link Arithmetic}), {@link String} (or a {@link Rope} built by {@code +}),
+ * {@link Character} and {@link Boolean}. Adding a String to any other value
+ * converts that value as {@code print} would. BigDecimals are computed by the
+ * given arithmetic, or {@link Arithmetic#DEFAULT} if there is none, while
+ * Doubles are computed as in Java, including comparisons.
+ */
+public final class Operators {
+
+    private Operators() {}
+
+    public static Object add(Object left, Object right) {
+        return add(left, right, Arithmetic.DEFAULT);
+    }
+
+    public static Object add(Object left, Object right, Arithmetic arithmetic) {
+        if(left instanceof String || right instanceof String || left instanceof Rope || right instanceof Rope) {
+            return Rope.concat(left, right);
+        }
+        else if(left instanceof BigInteger && right instanceof BigInteger) {
+            return ((BigInteger) left).add((BigInteger) right);
+        }
+        else if(left instanceof BigDecimal && right instanceof BigDecimal) {
+            return arithmetic.add((BigDecimal) left, (BigDecimal) right);
+        }
+        else if(left instanceof Double && right instanceof Double) {
+            return (Double) left + (Double) right;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object subtract(Object left, Object right) {
+        return subtract(left, right, Arithmetic.DEFAULT);
+    }
+
+    public static Object subtract(Object left, Object right, Arithmetic arithmetic) {
+        if(left instanceof BigInteger && right instanceof BigInteger) {
+            return ((BigInteger) left).subtract((BigInteger) right);
+        }
+        else if(left instanceof BigDecimal && right instanceof BigDecimal) {
+            return arithmetic.subtract((BigDecimal) left, (BigDecimal) right);
+        }
+        else if(left instanceof Double && right instanceof Double) {
+            return (Double) left - (Double) right;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object multiply(Object left, Object right) {
+        return multiply(left, right, Arithmetic.DEFAULT);
+    }
+
+    public static Object multiply(Object left, Object right, Arithmetic arithmetic) {
+        if(left instanceof BigInteger && right instanceof BigInteger) {
+            return ((BigInteger) left).multiply((BigInteger) right);
+        }
+        else if(left instanceof BigDecimal && right instanceof BigDecimal) {
+            return arithmetic.multiply((BigDecimal) left, (BigDecimal) right);
+        }
+        else if(left instanceof Double && right instanceof Double) {
+            return (Double) left * (Double) right;
+        }
+        throw new RuntimeException();
+    }
+
+    public static Object divide(Object left, Object right) {
+        return divide(left, right, Arithmetic.DEFAULT);
+    }
+
+    public static Object divide(Object left, Object right, Arithmetic arithmetic) {
+        if(left instanceof BigInteger && right instanceof BigInteger) {
+            return ((BigInteger) left).divide((BigInteger) right);
+        }
+        else if(left instanceof BigDecimal && right instanceof BigDecimal) {
+            return arithmetic.divide((BigDecimal) left, (BigDecimal) right);
+        }
+        else if(left instanceof Double && right instanceof Double) {
+            return (Double) left / (Double) right;
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Compares two values of the same class, as used by the relational
+     * operators.
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare(Object left, Object right) {
+        left = Rope.flatten(left);
+        right = Rope.flatten(right);
+        if(left.getClass() != right.getClass()) {
+            throw new RuntimeException();
+        }
+        return requireType(Comparable.class, left).compareTo(right);
+    }
+
+    public static boolean equal(Object left, Object right) {
+        if(left instanceof Double && right instanceof Double) {
+            return (double) (Double) left == (Double) right;
+        }
+        return Rope.flatten(left).equals(Rope.flatten(right));
+    }
+
+    /**
+     * Applies the arithmetic, relational or equality operator with the given
+     * symbol. Logical operators short-circuit and are handled by the caller.
+     */
+    public static Object apply(String operator, Object left, Object right) {
+        return apply(operator, left, right, Arithmetic.DEFAULT);
+    }
+
+    public static Object apply(String operator, Object left, Object right, Arithmetic arithmetic) {
+        if(left instanceof Double && right instanceof Double) {
+            return apply(operator, (double) (Double) left, (double) (Double) right);
+        }
+        switch(operator) {
+            case "<":
+                return compare(left, right) < 0;
+            case "<=":
+                return compare(left, right) <= 0;
+            case ">":
+                return compare(left, right) > 0;
+            case ">=":
+                return compare(left, right) >= 0;
+            case "==":
+                return equal(left, right);
+            case "!=":
+                return !equal(left, right);
+            case "+":
+                return add(left, right, arithmetic);
+            case "-":
+                return subtract(left, right, arithmetic);
+            case "*":
+                return multiply(left, right, arithmetic);
+            case "/":
+                return divide(left, right, arithmetic);
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Applies an operator to Doubles as Java does, where NaN is unordered
+     * and negative zero equals zero.
+     */
+    public static Object apply(String operator, double left, double right) {
+        switch(operator) {
+            case "<":
+                return left < right;
+            case "<=":
+                return left <= right;
+            case ">":
+                return left > right;
+            case ">=":
+                return left >= right;
+            case "==":
+                return left == right;
+            case "!=":
+                return left != right;
+            case "+":
+                return left + right;
+            case "-":
+                return left - right;
+            case "*":
+                return left * right;
+            case "/":
+                return left / right;
+        }
+        throw new RuntimeException();
+    }
+
+    /**
+     * Helper function to ensure a value is of the appropriate type.
+     */
+    public static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + value.getClass().getName() + ".");
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package plc.project;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where the {@code print} builtin writes. Lines are collected in a large
+ * buffer and only written out once it fills, when {@link #flush()} is called,
+ * or when the execution finishes, rather than flushing every line as
+ * {@link System#out} does.
+ *
+ * An output belongs to a single execution and is not thread-safe.
+ */
+public abstract class Output implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    protected final StringBuilder buffer;
+    private final int capacity;
+
+    protected Output(int capacity) {
+        this.buffer = new StringBuilder(Math.min(capacity, DEFAULT_CAPACITY));
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns an output collecting everything printed in memory, which is
+     * never written anywhere; see {@link Memory#getContents()}.
+     */
+    public static Memory memory() {
+        return new Memory();
+    }
+
+    /**
+     * Returns an output writing to the file through a {@link FileChannel},
+     * creating or truncating it. The file is closed by {@link #close()}.
+     */
+    public static Output file(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new Channel(channel, true, DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns an output writing directly to the standard output file
+     * descriptor, bypassing {@link System#out} (which is flushed first so the
+     * two stay in order).
+     */
+    public static Output stdout() {
+        return new Channel(new FileOutputStream(FileDescriptor.out).getChannel(), false, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns an output writing to the stream, which is flushed but never
+     * closed.
+     */
+    public static Output of(OutputStream stream) {
+        return new Stream(stream, DEFAULT_CAPACITY);
+    }
+
+    public final void println(Object value) {
+        buffer.append(value).append(LINE_SEPARATOR);
+        if (buffer.length() >= capacity) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the lines collected by a memory output, as if they had been
+     * printed here. Used by a {@link JvmCompiler.Program} once its compiled
+     * code has finished.
+     */
+    final void append(Memory lines) {
+        buffer.append(lines.buffer);
+        if (buffer.length() >= capacity) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes out everything buffered so far.
+     */
+    public void flush() {
+        drain();
+    }
+
+    private void drain() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(buffer));
+        buffer.setLength(0);
+        try {
+            write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the encoded contents of the buffer.
+     */
+    protected abstract void write(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Flushes the output, releasing anything it opened.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    public static final class Memory extends Output {
+
+        private Memory() {
+            super(Integer.MAX_VALUE);
+        }
+
+        /**
+         * Returns everything printed so far.
+         */
+        public String getContents() {
+            return buffer.toString();
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        protected void write(ByteBuffer bytes) {
+            throw new AssertionError();
+        }
+
+    }
+
+    private static final class Channel extends Output {
+
+        private final FileChannel channel;
+        private final boolean owned;
+
+        private Channel(FileChannel channel, boolean owned, int capacity) {
+            super(capacity);
+            this.channel = channel;
+            this.owned = owned;
+        }
+
+        @Override
+        protected void write(ByteBuffer bytes) throws IOException {
+            if (!owned) {
+                System.out.flush();
+            }
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (owned) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+    }
+
+    private static final class Stream extends Output {
+
+        private final OutputStream stream;
+
+        private Stream(OutputStream stream, int capacity) {
+            super(capacity);
+            this.stream = stream;
+        }
+
+        @Override
+        protected void write(ByteBuffer bytes) throws IOException {
+            stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+
+        @Override
+        public void flush() {
+            super.flush();
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
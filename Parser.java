@@ -32,11 +32,14 @@ public final class Parser {
         ArrayList<Ast.Field> fields = new ArrayList<>();
         ArrayList<Ast.Method> methods = new ArrayList<>();
         while(tokens.has(0)){
+            int offset = tokens.get(0).getIndex();
             if(match("LET")){
                 fields.add(parseField());
+                fields.get(fields.size() - 1).setOffset(offset);
             }
             else if(match("DEF")){
                 methods.add(parseMethod());
+                methods.get(methods.size() - 1).setOffset(offset);
             }
             else if(tokens.get(0).getLiteral().equals("\000")) {
                 tokens.advance();
@@ -122,18 +125,7 @@ public final class Parser {
             if(!match(":")) throwException("Expected ':'");
             if(!peek(Token.Type.IDENTIFIER)) throwException("Expected parameter type name");
             parametertypenames.add(tokens.consume().getLiteral());
-            if(match(','))
-            {
-                while(!match(','))
-                {
-                    if(!peek(Token.Type.IDENTIFIER)) throwException("Expected identifier or ')'");
-                    parameters.add(tokens.consume().getLiteral());
-                    if(!match(":")) throwException("Expected ':'");
-                    if(!peek(Token.Type.IDENTIFIER)) throwException("Expected parameter type name");
-                    parametertypenames.add(tokens.consume().getLiteral());
-                }
-            }
-            else
+            if(!match(","))
             {
                 if(!peek(")")) throwException("Expected ')'");
             }
@@ -155,9 +147,17 @@ public final class Parser {
     /**
      * Parses the {@code statement} rule and delegates to the necessary method.
      * If the next tokens do not start a declaration, if, while, or return
-     * statement, then it is an expression/assignment statement.
+     * statement, then it is an expression/assignment statement. The statement
+     * records the offset of its first token.
      */
     public Ast.Stmt parseStatement() {
+        int offset = tokens.has(0) ? tokens.get(0).getIndex() : -1;
+        Ast.Stmt statement = parseStatementBody();
+        statement.setOffset(offset);
+        return statement;
+    }
+
+    private Ast.Stmt parseStatementBody() {
         if(match("LET")){
             return parseDeclarationStatement();
         }
@@ -408,6 +408,10 @@ public final class Parser {
      * for expressions and includes literal values, grouping, variables, and
      * functions. It may be helpful to break these up into other methods but is
      * not strictly necessary.
+     *
+     * {@code SPAWN} is followed by a call, and {@code AWAIT} by a secondary
+     * expression giving the handle, so {@code AWAIT h + 1} adds one to the
+     * result.
      */
     public Ast.Expr parsePrimaryExpression() {
         if(peek(Token.Type.STRING))
@@ -433,6 +437,16 @@ public final class Parser {
                     return new Ast.Expr.Literal(true);
                 case "FALSE":
                     return new Ast.Expr.Literal(false);
+                case "SPAWN":
+                {
+                    Ast.Expr call = parsePrimaryExpression();
+                    if(!(call instanceof Ast.Expr.Function)) {
+                        throwException("Expected a call after SPAWN");
+                    }
+                    return new Ast.Expr.Spawn((Ast.Expr.Function) call);
+                }
+                case "AWAIT":
+                    return new Ast.Expr.Await(parseSecondaryExpression());
                 default: //functions
                 {
                     if(!match("(")) {
@@ -458,7 +472,7 @@ public final class Parser {
             return new Ast.Expr.Literal(input);
         }
         else if(peek(Token.Type.DECIMAL)){
-            java.math.BigDecimal input = java.math.BigDecimal.valueOf(Float.parseFloat(tokens.consume().getLiteral()));
+            java.math.BigDecimal input = new java.math.BigDecimal(tokens.consume().getLiteral());
             return new Ast.Expr.Literal(input);
         }
         else if(peek(Token.Type.CHARACTER)){
@@ -0,0 +1,163 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Times the Java generated for a few programs with and without a profile
+ * (see {@link Generator#Generator(PrintWriter, int, Instrumentation)}). Each
+ * program is first run in the interpreter with an {@link Instrumentation},
+ * whose counts are saved and read back as a later build would, then
+ * generated both ways, compiled with the system Java compiler and run in
+ * this JVM, checking that both print the same. Requires a JDK rather than a
+ * JRE.
+ */
+public final class PgoBenchmark {
+
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> programs = new LinkedHashMap<>();
+        programs.put("calls", String.join("\n",
+                "DEF scale(x: Integer, k: Integer): Integer DO",
+                "    RETURN x * k + 1;",
+                "END",
+                "DEF main(): Integer DO",
+                "    LET sum: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 200000 DO",
+                "        sum = sum + scale(i, 3) - scale(sum, 2) / 5;",
+                "        i = i + 1;",
+                "    END",
+                "    print(sum);",
+                "    RETURN 0;",
+                "END"));
+        programs.put("branches", String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET rare: Integer = 0;",
+                "    LET common: Integer = 0;",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 200000 DO",
+                "        IF i - i / 64 * 64 == 0 DO",
+                "            rare = rare + i;",
+                "        ELSE",
+                "            common = common + i / 3;",
+                "        END",
+                "        i = i + 1;",
+                "    END",
+                "    print(rare);",
+                "    print(common);",
+                "    RETURN 0;",
+                "END"));
+
+        PrintStream out = System.out;
+        for (Map.Entry<String, String> program : programs.entrySet()) {
+            if (args.length > 0 && !java.util.Arrays.asList(args).contains(program.getKey())) {
+                continue;
+            }
+            Ast.Source source = new Parser(new Lexer(program.getValue()).lex()).parseSource();
+            new Analyzer(null).visit(source);
+
+            Interpreter.Monitored interpreter = new Interpreter.Monitored(null, Output.memory());
+            Instrumentation instrumentation = new Instrumentation();
+            interpreter.setInstrumentation(instrumentation);
+            interpreter.visit(source);
+            Instrumentation profile = Instrumentation.read(instrumentation.toString());
+
+            Constructor<?> plain = compile(generate(source, null));
+            Constructor<?> guided = compile(generate(source, profile));
+            if (!run(plain).equals(run(guided))) {
+                throw new RuntimeException("The guided build of " + program.getKey() + " printed differently.");
+            }
+
+            double before = time(plain);
+            double after = time(guided);
+            out.printf("%-10s plain %10.3f ms/op  pgo %10.3f ms/op  speedup %5.2fx%n", program.getKey(), before, after, before / after);
+        }
+    }
+
+    private static String generate(Ast.Source source, Instrumentation profile) {
+        StringWriter java = new StringWriter();
+        PrintWriter writer = new PrintWriter(java);
+        new Generator(writer, 0, profile).visit(source);
+        writer.flush();
+        return java.toString();
+    }
+
+    /**
+     * Compiles the generated class into a directory of its own and returns the
+     * constructor of the loaded class.
+     */
+    static Constructor<?> compile(String java) throws IOException, ReflectiveOperationException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("Compiling the generated Java requires a JDK.");
+        }
+        Path directory = Files.createTempDirectory("plc-pgo");
+        Path file = directory.resolve("Main.java");
+        Files.writeString(file, java);
+        if (compiler.run(null, null, null, file.toString()) != 0) {
+            throw new RuntimeException("The generated Java does not compile:\n" + java);
+        }
+        ClassLoader loader = new URLClassLoader(new URL[] {directory.toUri().toURL()});
+        Constructor<?> constructor = loader.loadClass("Main").getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor;
+    }
+
+    /**
+     * Runs the generated {@code main} method on a new instance, returning
+     * what it printed.
+     */
+    static String run(Constructor<?> constructor) throws ReflectiveOperationException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes));
+        try {
+            invoke(constructor);
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    static double time(Constructor<?> constructor) throws ReflectiveOperationException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                invoke(constructor);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                invoke(constructor);
+            }
+            return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void invoke(Constructor<?> constructor) throws ReflectiveOperationException {
+        Object main = constructor.newInstance();
+        Method method = main.getClass().getDeclaredMethod("main");
+        method.setAccessible(true);
+        method.invoke(main);
+    }
+
+}
@@ -0,0 +1,112 @@
+package plc.project;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Times print-heavy loops in the interpreter against each kind of
+ * {@link Output}. The "per-line" sink writes and flushes every line through a
+ * {@link PrintStream}, as {@code print} did when it called
+ * {@link System#out} directly; the rest buffer. File sinks write to a
+ * temporary file which is deleted afterwards.
+ */
+public final class PrintBenchmark {
+
+    private static final int WARMUP = 2;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> programs = new LinkedHashMap<>();
+        programs.put("readme", String.join("\n",
+                "LET x: Integer = 0;",
+                "LET y: Integer = 2;",
+                "LET i: Integer;",
+                "DEF main(): Integer DO",
+                "    print(\"Hello, World!\");",
+                "    i = 0;",
+                "    WHILE i < 1000000 DO",
+                "        x = x + i;",
+                "        print(x * y);",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"));
+        programs.put("strings", String.join("\n",
+                "DEF main(): Integer DO",
+                "    LET i: Integer = 0;",
+                "    WHILE i < 1000000 DO",
+                "        print(\"line\");",
+                "        i = i + 1;",
+                "    END",
+                "    RETURN 0;",
+                "END"));
+
+        Path file = Files.createTempFile("plc-print", ".txt");
+        try {
+            Map<String, Supplier<Output>> sinks = new LinkedHashMap<>();
+            sinks.put("per-line", () -> perLine(file));
+            sinks.put("file", () -> Output.file(file));
+            sinks.put("memory", Output::memory);
+
+            for (Map.Entry<String, String> program : programs.entrySet()) {
+                Program compiled = Program.compile(program.getValue());
+                for (Map.Entry<String, Supplier<Output>> sink : sinks.entrySet()) {
+                    for (int i = 0; i < WARMUP; i++) {
+                        run(compiled, sink.getValue());
+                    }
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        run(compiled, sink.getValue());
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    System.out.printf("%-10s %-10s %10.3f ms/op%n", program.getKey(), sink.getKey(), elapsed / 1e6 / ITERATIONS);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void run(Program program, Supplier<Output> sink) {
+        try (Output out = sink.get()) {
+            program.execute(out);
+        }
+    }
+
+    /**
+     * Returns an output flushing every line to the file, as an autoflushing
+     * {@link PrintStream} does.
+     */
+    private static Output perLine(Path file) {
+        PrintStream stream;
+        try {
+            stream = new PrintStream(new FileOutputStream(file.toFile()), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Output(1) {
+
+            @Override
+            protected void write(ByteBuffer bytes) {
+                stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                stream.flush();
+            }
+
+            @Override
+            public void close() {
+                super.close();
+                stream.close();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,217 @@
+package plc.project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A sampling profiler for an {@link Interpreter.Monitored}, which publishes
+ * the method it is running and the statement it is at in a slot, and a
+ * sampler thread reads the slot at a fixed interval, so the cost while running
+ * is a store per statement rather than a counter per node.
+ *
+ * The slot holds the innermost of a chain of frames, one per method being
+ * interpreted, each holding the statement it is at. A sample is the chain
+ * from the outermost frame in, each frame named by its method and the source
+ * offset of its statement (see {@link Ast#getOffset()}), as in
+ * {@code main@96;fib@40}. Samples are counted per stack and written as
+ * collapsed stacks, one {@code stack count} per line, which flame graph tools
+ * read directly.
+ *
+ * A profiler follows a single interpreter. Code it runs elsewhere, compiled
+ * by tiering, in the chunks of a parallel loop or in spawned calls, is
+ * attributed to the statement which started it.
+ */
+public final class Profiler implements AutoCloseable {
+
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(1);
+
+    /**
+     * The most frames recorded per sample, nearest first; deeper stacks are
+     * rooted at {@code ...}.
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private static final VarHandle TOP;
+    private static final VarHandle STATEMENT;
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(Profiler.class, "top", Frame.class);
+            STATEMENT = MethodHandles.lookup().findVarHandle(Frame.class, "statement", Ast.Stmt.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long interval;
+    private final Map<String, Long> samples = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private Thread sampler = null;
+    private volatile long count = 0;
+
+    /**
+     * The innermost frame, written by the interpreter with release and read
+     * by the sampler with acquire semantics.
+     */
+    @SuppressWarnings("unused")
+    private Frame top = null;
+
+    public Profiler() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    public Profiler(Duration interval) {
+        this.interval = interval.toNanos();
+    }
+
+    /**
+     * Starts sampling on a daemon thread.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            throw new IllegalStateException("The profiler is already started.");
+        }
+        running = true;
+        sampler = new Thread(this::sample, "plc-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops sampling, waiting for the sampler to finish.
+     */
+    public synchronized void stop() {
+        if (sampler == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sampler = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Returns the number of samples of each collapsed stack.
+     */
+    public Map<String, Long> getSamples() {
+        return new HashMap<>(samples);
+    }
+
+    /**
+     * Returns the number of samples taken while a method was running.
+     */
+    public long getSampleCount() {
+        return count;
+    }
+
+    /**
+     * Writes the samples as collapsed stacks, most sampled first.
+     */
+    public void write(Appendable out) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(samples.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        try {
+            for (Map.Entry<String, Long> entry : entries) {
+                out.append(entry.getKey()).append(' ').append(String.valueOf(entry.getValue())).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        write(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Called by the interpreter as it starts running a method.
+     */
+    void enter(Ast.Method method) {
+        TOP.setRelease(this, new Frame(method, (Frame) TOP.get(this)));
+    }
+
+    /**
+     * Called by the interpreter as it leaves the innermost method.
+     */
+    void exit() {
+        TOP.setRelease(this, ((Frame) TOP.get(this)).caller);
+    }
+
+    /**
+     * Called by the interpreter as it starts running a statement.
+     */
+    void at(Ast.Stmt statement) {
+        Frame frame = (Frame) TOP.get(this);
+        if (frame != null) {
+            STATEMENT.setRelease(frame, statement);
+        }
+    }
+
+    private void sample() {
+        List<Frame> stack = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        while (running) {
+            LockSupport.parkNanos(interval);
+            Frame frame = (Frame) TOP.getAcquire(this);
+            if (frame == null) {
+                continue;
+            }
+            stack.clear();
+            for (; frame != null && stack.size() < MAX_DEPTH; frame = frame.caller) {
+                stack.add(frame);
+            }
+
+            builder.setLength(0);
+            if (frame != null) {
+                builder.append("...;");
+            }
+            for (int i = stack.size() - 1; i >= 0; i--) {
+                Ast.Stmt statement = (Ast.Stmt) STATEMENT.getAcquire(stack.get(i));
+                builder.append(stack.get(i).method.getName()).append('@')
+                        .append(statement != null ? statement.getOffset() : stack.get(i).method.getOffset());
+                if (i != 0) {
+                    builder.append(';');
+                }
+            }
+            samples.merge(builder.toString(), 1L, Long::sum);
+            count++;
+        }
+    }
+
+    private static final class Frame {
+
+        private final Ast.Method method;
+        private final Frame caller;
+
+        @SuppressWarnings("unused")
+        private Ast.Stmt statement = null;
+
+        private Frame(Ast.Method method, Frame caller) {
+            this.method = method;
+            this.caller = caller;
+        }
+
+    }
+
+}
@@ -0,0 +1,334 @@
+package plc.project;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled program: the analyzed AST together with the function each global
+ * call resolves to. Calls are resolved to indices in a function table which
+ * every execution fills with its own functions, so nothing is looked up by
+ * name while the program runs.
+ *
+ * The indices are kept by the program rather than written into the AST, so
+ * programs may share parts of their sources, as a reloaded one does (see
+ * {@link Interpreter#reload(String)}). A program is immutable once created
+ * and may be executed by any number of threads at once. Each execution runs in its own {@link Interpreter}, with
+ * its own globals, frames and output.
+ */
+public final class Program {
+
+    private final Ast.Source source;
+    private final String hash;
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> arities = new ArrayList<>();
+    private final Map<Ast.Expr.Function, Integer> calls = new IdentityHashMap<>();
+    private final int main;
+
+    /**
+     * Lexes, parses and analyzes the input, returning the compiled program.
+     */
+    public static Program compile(String input) {
+        return compile(input, null);
+    }
+
+    /**
+     * Compiles the input, analyzing it against a parent scope which declares
+     * any functions provided by the host. Every execution must then provide
+     * those functions in the scope it is given.
+     */
+    public static Program compile(String input, Scope parent) {
+        Ast.Source source = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(parent).visit(source);
+        return new Program(source, hash(input));
+    }
+
+    /**
+     * Returns the SHA-256 hash of the input, in hexadecimal, which identifies
+     * a source across runs.
+     */
+    public static String hash(String input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a program from a source which has already been analyzed. The
+     * source must not be modified afterwards.
+     */
+    public Program(Ast.Source source) {
+        this(source, null);
+    }
+
+    /**
+     * Creates a program from a source which has already been analyzed, given
+     * the hash of the input it was parsed from (see {@link #hash(String)}),
+     * which allows {@link Snapshot}s of it.
+     */
+    public Program(Ast.Source source, String hash) {
+        this(source, hash, null);
+    }
+
+    /**
+     * Creates a program from a changed version of the source of the previous
+     * one, whose function table starts with that of the previous program, so
+     * that code of the previous program which is still running calls the same
+     * functions through it (see {@link Interpreter#reload(String)}).
+     */
+    Program(Ast.Source source, String hash, Program previous) {
+        this.source = source;
+        this.hash = hash;
+        Map<String, Integer> indices = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.getFunctionCount(); i++) {
+                index(indices, previous.getFunctionName(i), previous.getFunctionArity(i));
+            }
+        }
+        for (Ast.Method method : source.getMethods()) {
+            index(indices, method.getName(), method.getParameters().size());
+        }
+        new Resolver(indices).visit(source);
+        if (!indices.containsKey("main/0")) {
+            throw new RuntimeException("The function main/0 is not defined in this scope.");
+        }
+        main = indices.get("main/0");
+    }
+
+    private int index(Map<String, Integer> indices, String name, int arity) {
+        return indices.computeIfAbsent(name + "/" + arity, key -> {
+            names.add(name);
+            arities.add(arity);
+            return names.size() - 1;
+        });
+    }
+
+    public Ast.Source getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the hash of the input the program was compiled from, or
+     * {@code null} if it was created from an AST alone.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the number of entries in the function table. The methods of the
+     * source come first, in order, followed by any other functions called,
+     * unless the program replaces a previous one, whose table comes first.
+     */
+    public int getFunctionCount() {
+        return names.size();
+    }
+
+    public String getFunctionName(int index) {
+        return names.get(index);
+    }
+
+    public int getFunctionArity(int index) {
+        return arities.get(index);
+    }
+
+    /**
+     * Returns the index in the function table of the function called by a
+     * global call in the source, or -1 if the call has a receiver or is not
+     * part of the program.
+     */
+    public int getIndex(Ast.Expr.Function call) {
+        Integer index = calls.get(call);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the index of {@code main/0} in the function table.
+     */
+    public int getMain() {
+        return main;
+    }
+
+    /**
+     * Executes the program with output written to standard output.
+     */
+    public Environment.PlcObject execute() {
+        return execute(Output.stdout());
+    }
+
+    /**
+     * Executes the program in a fresh interpreter, writing the output of
+     * {@code print} to the given output.
+     */
+    public Environment.PlcObject execute(Output out) {
+        return execute(null, out);
+    }
+
+    /**
+     * Executes the program with the given parent scope, which provides the
+     * functions declared when the program was compiled.
+     */
+    public Environment.PlcObject execute(Scope parent, Output out) {
+        return execute(parent, out, null);
+    }
+
+    /**
+     * Executes the program within the given budget, which throws
+     * {@link Budget.Exceeded} out of this method if it runs out.
+     */
+    public Environment.PlcObject execute(Scope parent, Output out, Budget budget) {
+        return new Interpreter(parent, null, out, budget).execute(this);
+    }
+
+    /**
+     * Executes the program with its fields restored from a snapshot rather
+     * than initialized, as described by {@link Snapshot}.
+     */
+    public Environment.PlcObject execute(Output out, Snapshot snapshot) {
+        return new Interpreter(null, null, out, null).execute(this, snapshot);
+    }
+
+    /**
+     * Assigns every global call its index in the function table.
+     */
+    private final class Resolver implements Ast.Visitor<Void> {
+
+        private final Map<String, Integer> indices;
+
+        private Resolver(Map<String, Integer> indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            for (Ast.Field field : ast.getFields()) {
+                visit(field);
+            }
+            for (Ast.Method method : ast.getMethods()) {
+                visit(method);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Field ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Method ast) {
+            visit(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Expression ast) {
+            return visit(ast.getExpression());
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Declaration ast) {
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Assignment ast) {
+            visit(ast.getReceiver());
+            return visit(ast.getValue());
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.If ast) {
+            visit(ast.getCondition());
+            visit(ast.getThenStatements());
+            visit(ast.getElseStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.For ast) {
+            visit(ast.getValue());
+            visit(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.While ast) {
+            visit(ast.getCondition());
+            visit(ast.getStatements());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Stmt.Return ast) {
+            return visit(ast.getValue());
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Literal ast) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Group ast) {
+            return visit(ast.getExpression());
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Binary ast) {
+            visit(ast.getLeft());
+            return visit(ast.getRight());
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Access ast) {
+            ast.getReceiver().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Function ast) {
+            if (ast.getReceiver().isPresent()) {
+                visit(ast.getReceiver().get());
+            } else {
+                calls.put(ast, index(indices, ast.getName(), ast.getArguments().size()));
+            }
+            for (Ast.Expr argument : ast.getArguments()) {
+                visit(argument);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Spawn ast) {
+            return visit(ast.getCall());
+        }
+
+        @Override
+        public Void visit(Ast.Expr.Await ast) {
+            return visit(ast.getValue());
+        }
+
+        private void visit(List<Ast.Stmt> statements) {
+            for (Ast.Stmt statement : statements) {
+                visit(statement);
+            }
+        }
+
+    }
+
+}
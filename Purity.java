@@ -0,0 +1,161 @@
+package plc.project;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether an analyzed method is pure: whether its result depends only
+ * on its arguments and calling it has no effect beyond returning that result.
+ * A pure method does not print, does not assign or even read a field (fields
+ * may change between calls), uses no receivers, and only calls itself, other
+ * pure methods, and the pure builtin {@code range}.
+ *
+ * A checker may instead decide whether a method is isolated: whether it can
+ * run concurrently with anything else, as a call started by {@code SPAWN}
+ * does. An isolated method may print, spawn and await, but like a pure method
+ * never reads or writes a field, so it shares no mutable state with other
+ * tasks, and only calls itself, other isolated methods, {@code print} and
+ * {@code range}. Every pure method is isolated.
+ *
+ * Each visit returns whether the node is pure (or isolated). The
+ * {@link Analyzer} runs this on every method once it has been analyzed, so
+ * that calls to methods defined earlier can be checked against their results,
+ * and on the initializer of every field, given only the fields some method
+ * assigns, since reading a field which keeps its initial value has no
+ * effect on when the initializer may run.
+ */
+public final class Purity implements Ast.Visitor<Boolean> {
+
+    private final Set<Environment.Variable> fields;
+    private final Set<Environment.Function> pure;
+    private final boolean isolation;
+    private Ast.Method method;
+
+    /**
+     * Creates a checker given the variables of the fields and the functions
+     * of the methods already known to be pure.
+     */
+    public Purity(Set<Environment.Variable> fields, Set<Environment.Function> pure) {
+        this(fields, pure, false);
+    }
+
+    /**
+     * Creates a checker deciding whether methods are isolated if
+     * {@code isolation} is set, given the functions of the methods already
+     * known to be isolated, and otherwise whether they are pure.
+     */
+    public Purity(Set<Environment.Variable> fields, Set<Environment.Function> pure, boolean isolation) {
+        this.fields = fields;
+        this.pure = pure;
+        this.isolation = isolation;
+    }
+
+    @Override
+    public Boolean visit(Ast.Source ast) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Boolean visit(Ast.Field ast) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Boolean visit(Ast.Method ast) {
+        method = ast;
+        return visit(ast.getStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Expression ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Declaration ast) {
+        return !ast.getValue().isPresent() || visit(ast.getValue().get());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Assignment ast) {
+        return visit(ast.getReceiver()) && visit(ast.getValue());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.If ast) {
+        return visit(ast.getCondition()) && visit(ast.getThenStatements()) && visit(ast.getElseStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.For ast) {
+        return visit(ast.getValue()) && visit(ast.getStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.While ast) {
+        return visit(ast.getCondition()) && visit(ast.getStatements());
+    }
+
+    @Override
+    public Boolean visit(Ast.Stmt.Return ast) {
+        return visit(ast.getValue());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Literal ast) {
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Binary ast) {
+        return visit(ast.getLeft()) && visit(ast.getRight());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Access ast) {
+        return !ast.getReceiver().isPresent() && !fields.contains(ast.getVariable());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Function ast) {
+        if(ast.getReceiver().isPresent()) {
+            return false;
+        }
+        Environment.Function function = ast.getFunction();
+        if((method == null || function != method.getFunction()) && !pure.contains(function) && !Analyzer.isRange(ast)
+                && !(isolation && Analyzer.isPrint(ast))) {
+            return false;
+        }
+        for(Ast.Expr argument : ast.getArguments()) {
+            if(!visit(argument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Spawn ast) {
+        return isolation && visit(ast.getCall());
+    }
+
+    @Override
+    public Boolean visit(Ast.Expr.Await ast) {
+        return isolation && visit(ast.getValue());
+    }
+
+    private boolean visit(List<Ast.Stmt> statements) {
+        for(Ast.Stmt statement : statements) {
+            if(!visit(statement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,141 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The sequence produced by the builtin {@code range(start, end[, step])}: the
+ * integers from {@code start} up to, but excluding, {@code end}, counting by
+ * {@code step} (by default one, and downwards if negative). Elements are
+ * computed as they are iterated, so a range takes constant space however long
+ * it is.
+ *
+ * Like every {@code IntegerIterable}, iterating a range yields
+ * {@link Environment.PlcObject}s, but the engines recognize a range in a
+ * {@code FOR} loop and count it directly instead.
+ */
+public final class Range implements Iterable<Environment.PlcObject> {
+
+    private final BigInteger start;
+    private final BigInteger end;
+    private final BigInteger step;
+
+    public Range(BigInteger start, BigInteger end) {
+        this(start, end, BigInteger.ONE);
+    }
+
+    public Range(BigInteger start, BigInteger end, BigInteger step) {
+        this.start = start;
+        this.end = end;
+        this.step = step;
+        step(step.signum());
+    }
+
+    /**
+     * Checks that a step is not zero, returning it. Called by the code the
+     * {@link JvmCompiler} emits for a counted loop.
+     */
+    public static long step(long step) {
+        if (step == 0) {
+            throw new RuntimeException("The step of a range cannot be zero.");
+        }
+        return step;
+    }
+
+    public BigInteger getStart() {
+        return start;
+    }
+
+    public BigInteger getEnd() {
+        return end;
+    }
+
+    public BigInteger getStep() {
+        return step;
+    }
+
+    /**
+     * Returns whether the range can be counted with a {@code long}: its bounds
+     * and step are small enough that stepping past the end cannot overflow.
+     */
+    public boolean isLong() {
+        return start.bitLength() < 62 && end.bitLength() < 62 && step.bitLength() < 62;
+    }
+
+    /**
+     * Returns an iterator over the raw {@link BigInteger} elements, counting
+     * with a {@code long} where possible.
+     */
+    public Iterator<BigInteger> values() {
+        if (!isLong()) {
+            return new Iterator<BigInteger>() {
+
+                private final Iterator<Environment.PlcObject> iterator = iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public BigInteger next() {
+                    return (BigInteger) iterator.next().getValue();
+                }
+
+            };
+        }
+        long end = this.end.longValue();
+        long step = this.step.longValue();
+        return new Iterator<BigInteger>() {
+
+            private long next = start.longValue();
+
+            @Override
+            public boolean hasNext() {
+                return step > 0 ? next < end : next > end;
+            }
+
+            @Override
+            public BigInteger next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = next;
+                next += step;
+                return BigInteger.valueOf(value);
+            }
+
+        };
+    }
+
+    @Override
+    public Iterator<Environment.PlcObject> iterator() {
+        return new Iterator<Environment.PlcObject>() {
+
+            private BigInteger next = start;
+
+            @Override
+            public boolean hasNext() {
+                return step.signum() > 0 ? next.compareTo(end) < 0 : next.compareTo(end) > 0;
+            }
+
+            @Override
+            public Environment.PlcObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BigInteger value = next;
+                next = next.add(step);
+                return Environment.create(value);
+            }
+
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "range(" + start + ", " + end + ", " + step + ")";
+    }
+
+}
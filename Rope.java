@@ -0,0 +1,106 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A String built by concatenation, kept as a tree of the pieces concatenated
+ * and only copied into a single String, once, when observed: printed,
+ * compared or used as a key. Appending to a long String in a loop therefore
+ * takes time proportional to what is appended rather than to the length of
+ * the result.
+ *
+ * Ropes are made by {@link #concat(Object, Object)}, which every engine
+ * calls for {@code +} on Strings, and are only ever seen where a String
+ * value could be. Anything which inspects a String value other than by
+ * concatenating it must first call {@link #flatten(Object)}. A rope is
+ * immutable, so it may be shared between threads; two threads flattening it
+ * at once merely both do the work.
+ */
+public final class Rope implements CharSequence {
+
+    /**
+     * The longest concatenation which is copied at once rather than kept as a
+     * rope, as copying short Strings is cheaper than a tree of them.
+     */
+    private static final int FLAT_LENGTH = 64;
+
+    private final Object left;
+    private final Object right;
+    private final int length;
+    private volatile String flat = null;
+
+    private Rope(Object left, Object right, int length) {
+        this.left = left;
+        this.right = right;
+        this.length = length;
+    }
+
+    /**
+     * Concatenates two values of which at least one is a String or rope,
+     * converting the other to a String as {@code print} would.
+     */
+    public static Object concat(Object left, Object right) {
+        Object l = left instanceof Rope ? left : String.valueOf(left);
+        Object r = right instanceof Rope ? right : String.valueOf(right);
+        int length = ((CharSequence) l).length() + ((CharSequence) r).length();
+        if (length < 0) {
+            throw new RuntimeException("The String is too long.");
+        }
+        if (length <= FLAT_LENGTH) {
+            return l.toString() + r;
+        }
+        return new Rope(l, r, length);
+    }
+
+    /**
+     * Returns the String of a rope, or any other value as is.
+     */
+    public static Object flatten(Object value) {
+        return value instanceof Rope ? value.toString() : value;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    /**
+     * Returns the String of the rope, copying the pieces in order on the
+     * first call. The tree is walked with a stack of its own, since ropes
+     * built in a loop are as deep as the loop is long.
+     */
+    @Override
+    public String toString() {
+        String result = flat;
+        if (result != null) {
+            return result;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Object piece = pending.pop();
+            if (piece instanceof Rope && ((Rope) piece).flat == null) {
+                pending.push(((Rope) piece).right);
+                pending.push(((Rope) piece).left);
+            } else {
+                builder.append(piece instanceof Rope ? ((Rope) piece).flat : (String) piece);
+            }
+        }
+        result = builder.toString();
+        flat = result;
+        return result;
+    }
+
+}
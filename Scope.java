@@ -1,16 +1,33 @@
 package plc.project;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Function;
 
 public final class Scope {
 
+    private static final AtomicIntegerFieldUpdater<Scope> FUNCTION_VERSION = AtomicIntegerFieldUpdater.newUpdater(Scope.class, "functionVersion");
+
     private final Scope parent;
     private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+
+    /**
+     * The functions defined in this scope, created on the first definition
+     * since most scopes are frames which define none. Functions may be
+     * replaced while other threads look them up (see
+     * {@link Interpreter#reload(String)}).
+     */
+    private Map<String, Environment.Function> functions = null;
+
+    /**
+     * Incremented whenever a function is defined or replaced in this scope
+     * (see {@link #getFunctionVersion()}).
+     */
+    private volatile int functionVersion = 0;
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -20,6 +37,21 @@ public final class Scope {
         return parent;
     }
 
+    /**
+     * Returns the version of the functions visible from this scope, which
+     * changes whenever a function is defined or replaced in it or one of its
+     * parents, allowing call sites to cache lookups until then. Defining
+     * functions in unrelated scopes, such as the globals of other
+     * executions, leaves it unchanged.
+     */
+    public int getFunctionVersion() {
+        int version = functionVersion;
+        for (Scope scope = parent; scope != null; scope = scope.parent) {
+            version += scope.functionVersion;
+        }
+        return version;
+    }
+
     public void defineVariable(String name, Environment.PlcObject value) {
         defineVariable(name, name, Environment.Type.ANY, value);
     }
@@ -34,6 +66,10 @@ public final class Scope {
         }
     }
 
+    public Collection<Environment.Variable> getVariables() {
+        return variables.values();
+    }
+
     public Environment.Variable lookupVariable(String name) {
         if (variables.containsKey(name)) {
             return variables.get(name);
@@ -45,26 +81,73 @@ public final class Scope {
     }
 
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        List<Environment.Type> parameterTypes = new ArrayList<>();
-        for (int i = 0; i < arity; i++) {
-            parameterTypes.add(Environment.Type.ANY);
-        }
-        defineFunction(name, name, parameterTypes, Environment.Type.ANY, function);
+        defineFunction(name, arity, new Environment.Function(name, arity, function));
+    }
+
+    public void defineFunction(String name, int arity, Environment.Invoker invoker) {
+        defineFunction(name, arity, new Environment.Function(name, arity, invoker));
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
-        } else {
-            Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
-            return func;
+        return defineFunction(name, parameterTypes.size(), new Environment.Function(name, jvmName, parameterTypes, returnType, function));
+    }
+
+    public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, Environment.Invoker invoker) {
+        return defineFunction(name, parameterTypes.size(), new Environment.Function(name, jvmName, parameterTypes, returnType, invoker));
+    }
+
+    private Environment.Function defineFunction(String name, int arity, Environment.Function func) {
+        if (functions == null) {
+            functions = new ConcurrentHashMap<>();
+        }
+        if (functions.putIfAbsent(name + "/" + arity, func) != null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is already defined in this scope.");
+        }
+        FUNCTION_VERSION.incrementAndGet(this);
+        return func;
+    }
+
+    /**
+     * Replaces the invoker of a function defined in this scope, keeping its
+     * name and types. The binding is replaced atomically, and call sites
+     * holding the previous function see the change through the function
+     * version.
+     */
+    public Environment.Function replaceFunction(String name, int arity, Environment.Invoker invoker) {
+        Environment.Function func = replaceFunction(name, arity, null, invoker);
+        if (func == null) {
+            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        }
+        return func;
+    }
+
+    /**
+     * Replaces the invoker of a function defined in this scope only if it is
+     * still {@code expected} (or, if that is {@code null}, whatever it is),
+     * returning the new function, or {@code null} if it was not replaced.
+     */
+    public Environment.Function replaceFunction(String name, int arity, Environment.Invoker expected, Environment.Invoker invoker) {
+        if (functions == null) {
+            return null;
+        }
+        Environment.Function[] replaced = new Environment.Function[1];
+        functions.computeIfPresent(name + "/" + arity, (key, previous) -> {
+            if (expected != null && previous.getInvoker() != expected) {
+                return previous;
+            }
+            replaced[0] = new Environment.Function(previous.getName(), previous.getJvmName(), previous.getParameterTypes(), previous.getReturnType(), invoker);
+            return replaced[0];
+        });
+        if (replaced[0] != null) {
+            FUNCTION_VERSION.incrementAndGet(this);
         }
+        return replaced[0];
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
+        Environment.Function function = functions == null ? null : functions.get(name + "/" + arity);
+        if (function != null) {
+            return function;
         } else if (parent != null) {
             return parent.lookupFunction(name, arity);
         } else {
@@ -77,7 +160,7 @@ public final class Scope {
         return "Scope{" +
                 "parent=" + parent +
                 ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", functions=" + (functions == null ? "[]" : functions.keySet()) +
                 '}';
     }
 
@@ -0,0 +1,317 @@
+package plc.project;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service running many small scripts concurrently. Each job is a source
+ * and an input string, which the script reads with the builtin
+ * {@code input()}. Compiled {@link Program}s are cached by the SHA-256 hash of
+ * their source in a bounded cache, evicting the least recently used, so a
+ * script submitted repeatedly is only lexed, parsed and analyzed once.
+ *
+ * Jobs run on virtual threads where the runtime provides them, and otherwise
+ * on a pool of platform threads. Each job captures its own output, and may be
+ * limited to a number of steps, a timeout and a memory quota (see
+ * {@link Budget}), so a runaway script fails rather than holding its thread
+ * or exhausting the shared heap.
+ */
+public final class ScriptExecutor implements AutoCloseable {
+
+    /**
+     * The scope declaring {@code input/0} to the analyzer. Executions provide
+     * their own definition returning the job's input.
+     */
+    private static final Scope DECLARATIONS = new Scope(null);
+
+    static {
+        DECLARATIONS.defineFunction("input", "input", Arrays.asList(), Environment.Type.STRING, args -> Environment.NIL);
+    }
+
+    private static final int SAMPLES = 1 << 16;
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Map<String, Program> cache;
+    private final long steps;
+    private final Duration timeout;
+    private final long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long started = System.nanoTime();
+
+    /**
+     * The latencies of the most recent jobs, in nanoseconds, from which the
+     * percentiles are computed.
+     */
+    private final long[] latencies = new long[SAMPLES];
+    private long samples = 0;
+
+    public ScriptExecutor(int cacheSize) {
+        this(cacheSize, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates an executor limiting each job to the given steps and timeout,
+     * as for {@link Budget#Budget(long, Duration)}.
+     */
+    public ScriptExecutor(int cacheSize, long steps, Duration timeout) {
+        this(cacheSize, steps, timeout, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates an executor which also limits the bytes each job allocates, as
+     * for {@link Budget#Budget(long, Duration, long)}.
+     */
+    public ScriptExecutor(int cacheSize, long steps, Duration timeout, long bytes) {
+        this.steps = steps;
+        this.timeout = timeout;
+        this.bytes = bytes;
+        ExecutorService executor;
+        boolean virtual;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+        } catch (ReflectiveOperationException e) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4, runnable -> {
+                Thread thread = new Thread(runnable, "plc-script");
+                thread.setDaemon(true);
+                return thread;
+            });
+            virtual = false;
+        }
+        this.executor = executor;
+        this.virtual = virtual;
+        this.cache = new LinkedHashMap<String, Program>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                if (size() > cacheSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * Returns whether jobs run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Submits a job, completing with its result once it has run.
+     */
+    public CompletableFuture<Result> submit(String source, String input) {
+        long submitted = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> run(source, input, submitted), executor);
+    }
+
+    /**
+     * Runs a job on the calling thread.
+     */
+    public Result execute(String source, String input) {
+        return run(source, input, System.nanoTime());
+    }
+
+    private Result run(String source, String input, long submitted) {
+        Output.Memory output = Output.memory();
+        Object value = null;
+        RuntimeException error = null;
+        try {
+            Scope scope = new Scope(null);
+            scope.defineFunction("input", 0, args -> Environment.create(input));
+            Budget budget = steps == Long.MAX_VALUE && timeout == null && bytes == Long.MAX_VALUE ? null : new Budget(steps, timeout, bytes);
+            value = compile(source).execute(scope, output, budget).getValue();
+            completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            error = e;
+            failed.incrementAndGet();
+        } catch (StackOverflowError e) {
+            // Deep recursion only fails the job, leaving the thread usable.
+            error = new RuntimeException("The stack overflowed.", e);
+            failed.incrementAndGet();
+        }
+        long latency = System.nanoTime() - submitted;
+        synchronized (latencies) {
+            latencies[(int) (samples++ % SAMPLES)] = latency;
+        }
+        return new Result(output.getContents(), value, error, latency);
+    }
+
+    /**
+     * Returns the cached program for the source, compiling it on a miss. Two
+     * jobs missing on the same source may both compile it; the programs are
+     * equivalent, so the later one simply replaces the earlier.
+     */
+    private Program compile(String source) {
+        String key = Program.hash(source);
+        Program program;
+        synchronized (cache) {
+            program = cache.get(key);
+        }
+        if (program != null) {
+            hits.incrementAndGet();
+            return program;
+        }
+        misses.incrementAndGet();
+        program = Program.compile(source, DECLARATIONS);
+        synchronized (cache) {
+            cache.put(key, program);
+        }
+        return program;
+    }
+
+    public Statistics getStatistics() {
+        long[] recent;
+        synchronized (latencies) {
+            recent = Arrays.copyOf(latencies, (int) Math.min(samples, SAMPLES));
+        }
+        Arrays.sort(recent);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return new Statistics(completed.get(), failed.get(), (completed.get() + failed.get()) / seconds,
+                percentile(recent, 0.50), percentile(recent, 0.99), hits.get(), misses.get(), evictions.get());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    public static final class Result {
+
+        private final String output;
+        private final Object value;
+        private final RuntimeException error;
+        private final long latency;
+
+        private Result(String output, Object value, RuntimeException error, long latency) {
+            this.output = output;
+            this.value = value;
+            this.error = error;
+            this.latency = latency;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * Returns the value returned by {@code main}, or {@code null} if the
+         * job failed.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the exception which ended the job, or {@code null} if it
+         * completed. A job which overflowed the stack fails with an exception
+         * caused by the StackOverflowError.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        /**
+         * Returns the time from submission to completion, in nanoseconds.
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+    }
+
+    public static final class Statistics {
+
+        private final long completed;
+        private final long failed;
+        private final double throughput;
+        private final long p50;
+        private final long p99;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Statistics(long completed, long failed, double throughput, long p50, long p99, long hits, long misses, long evictions) {
+            this.completed = completed;
+            this.failed = failed;
+            this.throughput = throughput;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the jobs finished per second since the executor started.
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * Returns the median latency of recent jobs, in nanoseconds.
+         */
+        public long getP50() {
+            return p50;
+        }
+
+        /**
+         * Returns the 99th percentile latency of recent jobs, in nanoseconds.
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        public long getCacheHits() {
+            return hits;
+        }
+
+        public long getCacheMisses() {
+            return misses;
+        }
+
+        public long getCacheEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("completed=%d failed=%d throughput=%.0f/s p50=%.3fms p99=%.3fms cache hits=%d misses=%d evictions=%d",
+                    completed, failed, throughput, p50 / 1e6, p99 / 1e6, hits, misses, evictions);
+        }
+
+    }
+
+}
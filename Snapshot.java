@@ -0,0 +1,231 @@
+package plc.project;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The values of the fields of a {@link Program} once initialized, so that
+ * later runs of the same source can restore them instead of evaluating every
+ * initializer again (see {@link Program#execute(Output, Snapshot)}). A
+ * snapshot is tied to the hash of the source it was taken of, and is written
+ * as a compact binary stream to be kept between runs.
+ *
+ * Methods are not part of a snapshot: defining them only binds their ASTs,
+ * which restoring does as usual. Only programs whose field initializers call
+ * no function other than {@code range} may be snapshotted, since any other
+ * (such as {@code print} or a function provided by the host) could have an
+ * effect or a result which differs between runs. Fields may hold Booleans,
+ * Integers, Decimals, Characters, Strings, ranges or nil.
+ */
+public final class Snapshot {
+
+    private static final int MAGIC = 0x504C4353;
+    private static final int VERSION = 1;
+
+    private static final byte NIL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte CHARACTER = 4;
+    private static final byte STRING = 5;
+    private static final byte RANGE = 6;
+
+    private final String hash;
+    private final Map<String, Object> values;
+
+    private Snapshot(String hash, Map<String, Object> values) {
+        this.hash = hash;
+        this.values = values;
+    }
+
+    /**
+     * Initializes the fields of the program in an interpreter of its own and
+     * returns their values.
+     */
+    public static Snapshot take(Program program) {
+        if (program.getHash() == null) {
+            throw new RuntimeException("A snapshot requires the hash of the program's source.");
+        }
+        for (Ast.Field field : program.getSource().getFields()) {
+            if (field.getValue().isPresent() && calls(field.getValue().get())) {
+                throw new RuntimeException("The field " + field.getName() + " cannot be snapshotted, as its initializer calls a function.");
+            }
+        }
+
+        Interpreter interpreter = new Interpreter(null, null, Output.memory());
+        interpreter.initialize(program.getSource(), null);
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Ast.Field field : program.getSource().getFields()) {
+            values.put(field.getName(), Rope.flatten(interpreter.getScope().lookupVariable(field.getName()).getValue().getValue()));
+        }
+        return new Snapshot(program.getHash(), values);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(OutputStream)}.
+     */
+    public static Snapshot read(InputStream in) {
+        try {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new RuntimeException("Expected a snapshot.");
+            }
+            String hash = data.readUTF();
+            int count = data.readInt();
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                values.put(data.readUTF(), readValue(data));
+            }
+            return new Snapshot(hash, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the hash of the source the snapshot was taken of (see
+     * {@link Program#hash(String)}).
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public void write(OutputStream out) {
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(hash);
+            data.writeInt(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                data.writeUTF(entry.getKey());
+                writeValue(data, entry.getKey(), entry.getValue());
+            }
+            data.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Defines every field in the scope with its value, in order.
+     */
+    void restore(Scope scope) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            scope.defineVariable(entry.getKey(), wrap(entry.getValue()));
+        }
+    }
+
+    private static Environment.PlcObject wrap(Object value) {
+        if (value == Environment.NIL.getValue()) {
+            return Environment.NIL;
+        } else if (value instanceof Boolean) {
+            return new Environment.PlcObject(Environment.Type.BOOLEAN, new Scope(null), value);
+        } else if (value instanceof BigInteger) {
+            return new Environment.PlcObject(Environment.Type.INTEGER, new Scope(null), value);
+        } else if (value instanceof BigDecimal) {
+            return new Environment.PlcObject(Environment.Type.DECIMAL, new Scope(null), value);
+        } else if (value instanceof Character) {
+            return new Environment.PlcObject(Environment.Type.CHARACTER, new Scope(null), value);
+        } else if (value instanceof String) {
+            return new Environment.PlcObject(Environment.Type.STRING, new Scope(null), value);
+        }
+        return Environment.create(value);
+    }
+
+    private static void writeValue(DataOutputStream data, String name, Object value) throws IOException {
+        if (value == Environment.NIL.getValue()) {
+            data.writeByte(NIL);
+        } else if (value instanceof Boolean) {
+            data.writeByte(BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            data.writeByte(INTEGER);
+            writeBytes(data, ((BigInteger) value).toByteArray());
+        } else if (value instanceof BigDecimal) {
+            data.writeByte(DECIMAL);
+            writeBytes(data, ((BigDecimal) value).unscaledValue().toByteArray());
+            data.writeInt(((BigDecimal) value).scale());
+        } else if (value instanceof Character) {
+            data.writeByte(CHARACTER);
+            data.writeChar((Character) value);
+        } else if (value instanceof String) {
+            data.writeByte(STRING);
+            writeBytes(data, ((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Range) {
+            data.writeByte(RANGE);
+            writeBytes(data, ((Range) value).getStart().toByteArray());
+            writeBytes(data, ((Range) value).getEnd().toByteArray());
+            writeBytes(data, ((Range) value).getStep().toByteArray());
+        } else {
+            throw new RuntimeException("The field " + name + " holds a value which cannot be snapshotted.");
+        }
+    }
+
+    private static Object readValue(DataInputStream data) throws IOException {
+        byte tag = data.readByte();
+        switch (tag) {
+            case NIL:
+                return Environment.NIL.getValue();
+            case BOOLEAN:
+                return data.readBoolean();
+            case INTEGER:
+                return new BigInteger(readBytes(data));
+            case DECIMAL:
+                return new BigDecimal(new BigInteger(readBytes(data)), data.readInt());
+            case CHARACTER:
+                return data.readChar();
+            case STRING:
+                return new String(readBytes(data), StandardCharsets.UTF_8);
+            case RANGE:
+                return new Range(new BigInteger(readBytes(data)), new BigInteger(readBytes(data)), new BigInteger(readBytes(data)));
+            default:
+                throw new RuntimeException("Unexpected value " + tag + " in snapshot.");
+        }
+    }
+
+    private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns whether the expression calls any function but {@code range}.
+     */
+    private static boolean calls(Ast.Expr expression) {
+        if (expression instanceof Ast.Expr.Group) {
+            return calls(((Ast.Expr.Group) expression).getExpression());
+        } else if (expression instanceof Ast.Expr.Binary) {
+            return calls(((Ast.Expr.Binary) expression).getLeft()) || calls(((Ast.Expr.Binary) expression).getRight());
+        } else if (expression instanceof Ast.Expr.Access) {
+            return ((Ast.Expr.Access) expression).getReceiver().map(Snapshot::calls).orElse(false);
+        } else if (expression instanceof Ast.Expr.Function) {
+            if (!Analyzer.isRange(expression)) {
+                return true;
+            }
+            for (Ast.Expr argument : ((Ast.Expr.Function) expression).getArguments()) {
+                if (calls(argument)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return expression instanceof Ast.Expr.Spawn || expression instanceof Ast.Expr.Await;
+    }
+
+}
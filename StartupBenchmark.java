@@ -0,0 +1,87 @@
+package plc.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Times the startup of a program with many fields, from its source to the end
+ * of {@code main}, some cheap to initialize and some squaring ever larger
+ * Integers, of which {@code main} only reads a few. Fields are initialized as
+ * usual ("cold"), restored from a {@link Snapshot} read from bytes ("warm"),
+ * or initialized on first read (see {@link Interpreter#setLazyFields}). Every
+ * run includes compiling the source, which neither saves, so compiling alone
+ * is timed too. All are checked to print the same.
+ */
+public final class StartupBenchmark {
+
+    private static final int FIELDS = 1000;
+    private static final int SQUARES = 20;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < FIELDS; i++) {
+            source.append("LET d").append(i).append(": Decimal = ").append(i).append(".5 * ").append(i).append(".25 - 1.0;\n");
+        }
+        source.append("LET s0: Integer = 3;\n");
+        for (int i = 1; i <= SQUARES; i++) {
+            source.append("LET s").append(i).append(": Integer = s").append(i - 1).append(" * s").append(i - 1).append(";\n");
+        }
+        source.append("DEF main(): Integer DO\n");
+        source.append("    print(s").append(SQUARES / 2).append(" - s").append(SQUARES / 2 - 1).append(" * s").append(SQUARES / 2 - 1).append(");\n");
+        source.append("    print(d").append(FIELDS - 1).append(");\n");
+        source.append("    RETURN 0;\n");
+        source.append("END\n");
+        String input = source.toString();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Snapshot.take(Program.compile(input)).write(bytes);
+        byte[] snapshot = bytes.toByteArray();
+
+        Supplier<String> cold = () -> {
+            Output.Memory out = Output.memory();
+            Program.compile(input).execute(out);
+            return out.getContents();
+        };
+        Supplier<String> warm = () -> {
+            Output.Memory out = Output.memory();
+            Program program = Program.compile(input);
+            program.execute(out, Snapshot.read(new ByteArrayInputStream(snapshot)));
+            return out.getContents();
+        };
+        Supplier<String> lazy = () -> {
+            Output.Memory out = Output.memory();
+            Interpreter interpreter = new Interpreter(null, null, out);
+            interpreter.setLazyFields(true);
+            interpreter.execute(Program.compile(input));
+            return out.getContents();
+        };
+        if (!cold.get().equals(warm.get()) || !cold.get().equals(lazy.get())) {
+            throw new RuntimeException("The restored or lazy program printed differently.");
+        }
+
+        System.out.printf("%d fields, snapshot of %d bytes%n", FIELDS + SQUARES + 1, snapshot.length);
+        double before = time(cold);
+        double after = time(warm);
+        double deferred = time(lazy);
+        double compile = time(() -> Program.compile(input).getHash());
+        System.out.printf("compile %10.3f ms/op%n", compile);
+        System.out.printf("cold    %10.3f ms/op%n", before);
+        System.out.printf("warm    %10.3f ms/op  speedup %5.2fx%n", after, before / after);
+        System.out.printf("lazy    %10.3f ms/op  speedup %5.2fx%n", deferred, before / deferred);
+    }
+
+    private static double time(Supplier<String> run) {
+        for (int i = 0; i < WARMUP; i++) {
+            run.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            run.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+}
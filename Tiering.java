@@ -0,0 +1,261 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiered execution for the {@link Interpreter}. Programs start out
+ * interpreted while invocations of each {@link Ast.Method} and back-edges of
+ * each WHILE and FOR loop are counted. Once a method crosses a threshold it is
+ * compiled to {@link Node}s on a background thread, and the interpreter swaps
+ * the method's {@link Environment.Function} for the compiled one on its next
+ * invocation. A WHILE loop which crosses the back-edge threshold is compiled
+ * the same way and the running loop continues in compiled form, so a long
+ * loop in {@code main} does not have to wait for another invocation.
+ *
+ * Counters and tiers may be read from any thread while the program runs.
+ */
+public final class Tiering {
+
+    public enum Tier {
+        INTERPRETED, COMPILING, COMPILED, FAILED
+    }
+
+    /**
+     * Receives every tier transition, on the thread which made it.
+     */
+    public interface Listener {
+
+        void transition(Counters counters, Tier from, Tier to);
+
+    }
+
+    private static final Executor COMPILER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plc-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int invocationThreshold;
+    private final int backEdgeThreshold;
+    private final Executor compiler;
+
+    private final Map<Ast, Counters> counters = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final List<Counters> methods = new CopyOnWriteArrayList<>();
+    private final List<Counters> loops = new CopyOnWriteArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public Tiering() {
+        this(1000, 10000);
+    }
+
+    public Tiering(int invocationThreshold, int backEdgeThreshold) {
+        this(invocationThreshold, backEdgeThreshold, COMPILER);
+    }
+
+    /**
+     * Creates a tiering policy compiling on the given executor; passing
+     * {@code Runnable::run} compiles synchronously on the interpreting thread.
+     */
+    public Tiering(int invocationThreshold, int backEdgeThreshold, Executor compiler) {
+        this.invocationThreshold = invocationThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+        this.compiler = compiler;
+    }
+
+    public int getInvocationThreshold() {
+        return invocationThreshold;
+    }
+
+    public int getBackEdgeThreshold() {
+        return backEdgeThreshold;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the counters of every method seen so far, in the order they
+     * were defined.
+     */
+    public List<Counters> getMethods() {
+        return new ArrayList<>(methods);
+    }
+
+    /**
+     * Returns the counters of every loop executed so far, in the order they
+     * were first entered.
+     */
+    public List<Counters> getLoops() {
+        return new ArrayList<>(loops);
+    }
+
+    /**
+     * Returns the counters for a method, creating them when the method is
+     * first defined.
+     */
+    public Counters method(Ast.Method ast) {
+        synchronized (counters) {
+            Counters method = counters.get(ast);
+            if (method == null) {
+                method = new Counters(ast.getName() + "/" + ast.getParameters().size(), null);
+                counters.put(ast, method);
+                methods.add(method);
+            }
+            return method;
+        }
+    }
+
+    /**
+     * Returns the counters for a WHILE or FOR loop within the given method.
+     * Back-edges of the loop are also counted towards the method.
+     */
+    public Counters loop(Ast.Stmt ast, Counters method) {
+        synchronized (counters) {
+            Counters loop = counters.get(ast);
+            if (loop == null) {
+                String kind = ast instanceof Ast.Stmt.While ? "WHILE" : "FOR";
+                loop = new Counters(method.getName() + " " + kind + "#" + (++method.loops), method);
+                counters.put(ast, loop);
+                loops.add(loop);
+            }
+            return loop;
+        }
+    }
+
+    /**
+     * Compiles a method against the global scope of the interpreter running
+     * it, with its arithmetic. The result is {@code null} if the method cannot
+     * be compiled, in which case it stays interpreted.
+     */
+    public CompletableFuture<Node.Method> compile(Counters counters, Ast.Method ast, Scope globals, Arithmetic arithmetic) {
+        counters.transition(Tier.COMPILING);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Node.Method method = NodeCompiler.within(globals, arithmetic).visit(ast);
+                counters.transition(Tier.COMPILED);
+                return method;
+            } catch (RuntimeException e) {
+                counters.transition(Tier.FAILED);
+                return null;
+            }
+        }, compiler);
+    }
+
+    /**
+     * Compiles a running WHILE loop against the scope it is running in, so
+     * the variables it shares with the interpreter are read and written in
+     * place, with the interpreter's arithmetic. The result is {@code null} if
+     * the loop cannot be compiled.
+     */
+    public CompletableFuture<Node.Method> compile(Counters counters, Ast.Stmt.While ast, Scope scope, Arithmetic arithmetic) {
+        counters.transition(Tier.COMPILING);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Node.Method loop = NodeCompiler.within(scope, arithmetic).compileLoop(ast);
+                counters.transition(Tier.COMPILED);
+                return loop;
+            } catch (RuntimeException e) {
+                counters.transition(Tier.FAILED);
+                return null;
+            }
+        }, compiler);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Counters method : methods) {
+            builder.append(method).append('\n');
+        }
+        for (Counters loop : loops) {
+            builder.append(loop).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The counters and current tier of a method or loop. Invocations are only
+     * counted while the method is interpreted, since compiled code calls its
+     * callees directly.
+     */
+    public final class Counters {
+
+        private final String name;
+        private final Counters method;
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong backEdges = new AtomicLong();
+        private volatile Tier tier = Tier.INTERPRETED;
+        private int loops = 0;
+
+        private Counters(String name, Counters method) {
+            this.name = name;
+            this.method = method;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Tier getTier() {
+            return tier;
+        }
+
+        public long getInvocations() {
+            return invocations.get();
+        }
+
+        public long getBackEdges() {
+            return backEdges.get();
+        }
+
+        /**
+         * Counts an interpreted invocation, returning the new total.
+         */
+        public long invoked() {
+            return invocations.incrementAndGet();
+        }
+
+        /**
+         * Counts an interpreted back-edge of a loop, and of the method which
+         * contains it.
+         */
+        public void backEdge() {
+            backEdges.incrementAndGet();
+            if (method != null) {
+                method.backEdges.incrementAndGet();
+            }
+        }
+
+        /**
+         * Returns whether the method has crossed a threshold for compilation.
+         */
+        public boolean isHot() {
+            return invocations.get() >= invocationThreshold || backEdges.get() >= backEdgeThreshold;
+        }
+
+        private void transition(Tier to) {
+            Tier from = tier;
+            tier = to;
+            for (Listener listener : listeners) {
+                listener.transition(this, from, to);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + tier + " invocations=" + invocations + " backEdges=" + backEdges;
+        }
+
+    }
+
+}
@@ -0,0 +1,269 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Executes a {@link Bytecode.Program} with a dispatch loop over each method's
+ * code array. Calls are made within the same loop on an explicit frame stack,
+ * so deep recursion needs heap rather than Java stack. Values on the operand stack and in frames are the unwrapped
+ * Java objects used by {@link Operators}, so the results match the
+ * {@link Interpreter}.
+ */
+public final class VirtualMachine {
+
+    private static final Object NIL = Environment.NIL.getValue();
+
+    private final Bytecode.Program program;
+    private final Output out;
+    private final Object[] constants;
+    private final Bytecode.Method[] methods;
+    private final Object[] globals;
+
+    public VirtualMachine(Bytecode.Program program) {
+        this(program, Output.of(System.out));
+    }
+
+    /**
+     * Creates a virtual machine whose {@code print} writes to the given
+     * output, which is flushed once each execution finishes.
+     */
+    public VirtualMachine(Bytecode.Program program, Output out) {
+        this.program = program;
+        this.out = out;
+        this.constants = program.getConstants();
+        this.methods = program.getMethods().toArray(new Bytecode.Method[0]);
+        this.globals = new Object[program.getFields().length];
+        Arrays.fill(globals, NIL);
+    }
+
+    /**
+     * Initializes the fields and invokes {@code main/0}, returning its result
+     * as {@link Interpreter#visit(Ast.Source)} would.
+     */
+    public Environment.PlcObject execute() {
+        try {
+            run(program.getInitializer());
+            Object result = run(program.getMain());
+            return result == NIL ? Environment.NIL : Environment.create(result);
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs a method without arguments to completion. Calls made from it do
+     * not recurse in Java: every frame lives on a single value stack, where a
+     * frame's locals are followed by its operands, and the arguments a caller
+     * pushes become the first locals of the callee. Returning restores the
+     * caller from the call stack, so recursion depth is limited by the heap
+     * rather than the Java stack.
+     */
+    @SuppressWarnings("unchecked")
+    private Object run(Bytecode.Method entry) {
+        Object[] stack = new Object[Math.max(64, entry.getFrameSize() + entry.getStackSize())];
+        Bytecode.Method[] callers = new Bytecode.Method[16];
+        int[] calls = new int[32];
+        int depth = 0;
+
+        Bytecode.Method method = entry;
+        int[] code = method.getCode();
+        int fp = 0;
+        int sp = method.getFrameSize();
+        int pc = 0;
+
+        while (true) {
+            switch (code[pc]) {
+                case Bytecode.CONST:
+                    stack[sp++] = constants[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Bytecode.LOAD:
+                    stack[sp++] = stack[fp + code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Bytecode.STORE:
+                    stack[fp + code[pc + 1]] = stack[--sp];
+                    pc += 2;
+                    break;
+                case Bytecode.GLOAD:
+                    stack[sp++] = globals[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Bytecode.GSTORE:
+                    globals[code[pc + 1]] = stack[--sp];
+                    pc += 2;
+                    break;
+                case Bytecode.ADD: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof BigInteger && right instanceof BigInteger
+                            ? ((BigInteger) left).add((BigInteger) right)
+                            : Operators.add(left, right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.SUB: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof BigInteger && right instanceof BigInteger
+                            ? ((BigInteger) left).subtract((BigInteger) right)
+                            : Operators.subtract(left, right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.MUL: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof BigInteger && right instanceof BigInteger
+                            ? ((BigInteger) left).multiply((BigInteger) right)
+                            : Operators.multiply(left, right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.DIV: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Operators.divide(stack[sp - 1], right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.LT: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = compare(stack[sp - 1], right) < 0;
+                    pc++;
+                    break;
+                }
+                case Bytecode.LE: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = compare(stack[sp - 1], right) <= 0;
+                    pc++;
+                    break;
+                }
+                case Bytecode.GT: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = compare(stack[sp - 1], right) > 0;
+                    pc++;
+                    break;
+                }
+                case Bytecode.GE: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = compare(stack[sp - 1], right) >= 0;
+                    pc++;
+                    break;
+                }
+                case Bytecode.EQ: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Operators.equal(stack[sp - 1], right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.NE: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Operators.equal(stack[sp - 1], right);
+                    pc++;
+                    break;
+                }
+                case Bytecode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Bytecode.JUMP_FALSE:
+                    pc = Operators.requireType(Boolean.class, stack[--sp]) ? pc + 2 : code[pc + 1];
+                    break;
+                case Bytecode.JUMP_TRUE:
+                    pc = Operators.requireType(Boolean.class, stack[--sp]) ? code[pc + 1] : pc + 2;
+                    break;
+                case Bytecode.CALL: {
+                    Bytecode.Method callee = methods[code[pc + 1]];
+                    if (depth == callers.length) {
+                        callers = Arrays.copyOf(callers, depth * 2);
+                        calls = Arrays.copyOf(calls, depth * 4);
+                    }
+                    callers[depth] = method;
+                    calls[2 * depth] = pc + 2;
+                    calls[2 * depth + 1] = fp;
+                    depth++;
+
+                    fp = sp - callee.getArity();
+                    sp = fp + callee.getFrameSize();
+                    if (sp + callee.getStackSize() > stack.length) {
+                        stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + callee.getStackSize()));
+                    }
+                    method = callee;
+                    code = callee.getCode();
+                    pc = 0;
+                    break;
+                }
+                case Bytecode.PRINT:
+                    out.println(stack[sp - 1]);
+                    stack[sp - 1] = NIL;
+                    pc++;
+                    break;
+                case Bytecode.POP:
+                    stack[--sp] = null;
+                    pc++;
+                    break;
+                case Bytecode.RETURN: {
+                    Object result = stack[--sp];
+                    if (depth == 0) {
+                        return result;
+                    }
+                    // The callee's locals and operands are cleared so the
+                    // stack does not keep their values reachable.
+                    Arrays.fill(stack, fp, sp, null);
+                    sp = fp;
+                    stack[sp++] = result;
+                    depth--;
+                    method = callers[depth];
+                    callers[depth] = null;
+                    pc = calls[2 * depth];
+                    fp = calls[2 * depth + 1];
+                    code = method.getCode();
+                    break;
+                }
+                case Bytecode.RANGE: {
+                    BigInteger step = BigInteger.ONE;
+                    if (code[pc + 1] == 3) {
+                        step = Operators.requireType(BigInteger.class, stack[--sp]);
+                        stack[sp] = null;
+                    }
+                    BigInteger end = Operators.requireType(BigInteger.class, stack[--sp]);
+                    stack[sp] = null;
+                    stack[sp - 1] = new Range(Operators.requireType(BigInteger.class, stack[sp - 1]), end, step);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.ITER:
+                    if (stack[sp - 1] instanceof Range) {
+                        stack[sp - 1] = ((Range) stack[sp - 1]).values();
+                    } else {
+                        stack[sp - 1] = Operators.requireType(Iterable.class, stack[sp - 1]).iterator();
+                    }
+                    pc++;
+                    break;
+                case Bytecode.NEXT: {
+                    Iterator<Object> iterator = (Iterator<Object>) stack[sp - 1];
+                    if (iterator.hasNext()) {
+                        Object element = iterator.next();
+                        stack[fp + code[pc + 1]] = element instanceof Environment.PlcObject ? ((Environment.PlcObject) element).getValue() : element;
+                        pc += 3;
+                    } else {
+                        stack[--sp] = null;
+                        pc = code[pc + 2];
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Invalid opcode " + code[pc] + " at " + pc + " in " + method.getName() + ".");
+            }
+        }
+    }
+
+    private static int compare(Object left, Object right) {
+        if (left instanceof BigInteger && right instanceof BigInteger) {
+            return ((BigInteger) left).compareTo((BigInteger) right);
+        }
+        return Operators.compare(left, right);
+    }
+
+}
@@ -4,7 +4,26 @@ import java.io.*;
 
 public class main {
 
+    /**
+     * Runs input.txt with the execution engine named by the first argument:
+     * "interpreter" (the default), "tiered", "memoized", "nodes", "vm" or "jit". The argument
+     * "disassemble" prints the bytecode the vm would run instead, and "profile" runs the
+     * interpreter while sampling it, writing collapsed stacks to profile.folded. The argument
+     * "instrument" runs the interpreter counting statements, branches and loop iterations,
+     * writing the counts to instrumentation.json. A second argument names such a file, saved
+     * by an earlier run, to guide the generated Java. The argument "snapshot" restores the
+     * fields from snapshot.bin if it was taken of the same source, and otherwise takes it, and
+     * "lazy" runs the interpreter initializing fields on their first read. The argument "watch"
+     * runs the interpreter while reloading the methods of input.txt whenever it changes (see
+     * Interpreter#reload). A third argument
+     * names the arithmetic of Decimals (see Arithmetic#valueOf), such as "double" or
+     * "decimal128", for the analyzer, the interpreter and the generated Java alike; by default
+     * the interpreter divides Decimals to one place and the generated Java uses doubles.
+     * The "snapshot" engine only runs with the default arithmetic.
+     */
     public static void main(String[] args) throws IOException {
+        String engine = args.length > 0 ? args[0] : "interpreter";
+
         /***
          * change fileName path as needed, using these functions to help define relative path:
          * File file = new File(".");
@@ -35,14 +54,127 @@ public class main {
         Ast.Source source = parser.parseSource();
 
 
-        Interpreter interpreter = new Interpreter(null);
-        interpreter.visit(source);
-
+        Arithmetic arithmetic = args.length > 2 ? Arithmetic.valueOf(args[2]) : Arithmetic.DEFAULT;
         Analyzer analyzer = new Analyzer(null);
+        analyzer.setArithmetic(arithmetic);
         analyzer.visit(source);
 
+        if(engine.equals("tiered")) {
+            Tiering tiering = new Tiering();
+            Interpreter interpreter = new Interpreter(null, tiering);
+            interpreter.setArithmetic(arithmetic);
+            interpreter.visit(source);
+            System.err.print(tiering);
+        }
+        else if(engine.equals("memoized")) {
+            Interpreter interpreter = new Interpreter(null);
+            interpreter.setArithmetic(arithmetic);
+            interpreter.setMemoization(10000);
+            interpreter.visit(source);
+            for(Memo memo : interpreter.getMemos()) {
+                System.err.println(memo);
+            }
+        }
+        else if(engine.equals("profile")) {
+            Interpreter.Monitored interpreter = new Interpreter.Monitored(null);
+            interpreter.setArithmetic(arithmetic);
+            try(Profiler profiler = new Profiler(); Writer out = new FileWriter("profile.folded")) {
+                interpreter.setProfiler(profiler);
+                profiler.start();
+                interpreter.visit(source);
+                profiler.stop();
+                profiler.write(out);
+                System.err.println(profiler.getSampleCount() + " samples written to profile.folded");
+            }
+        }
+        else if(engine.equals("instrument")) {
+            Interpreter.Monitored interpreter = new Interpreter.Monitored(null);
+            interpreter.setArithmetic(arithmetic);
+            Instrumentation instrumentation = new Instrumentation();
+            interpreter.setInstrumentation(instrumentation);
+            interpreter.visit(source);
+            try(Writer out = new FileWriter("instrumentation.json")) {
+                instrumentation.write(out);
+            }
+        }
+        else if(engine.equals("snapshot")) {
+            // Snapshots are executed, as they are taken, with the default arithmetic.
+            if(arithmetic != Arithmetic.DEFAULT) {
+                throw new RuntimeException("Snapshots are taken with the default arithmetic.");
+            }
+            Program program = new Program(source, Program.hash(input));
+            File file = new File("snapshot.bin");
+            Snapshot snapshot = null;
+            if(file.exists()) {
+                try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                    snapshot = Snapshot.read(in);
+                }
+            }
+            if(snapshot == null || !snapshot.getHash().equals(program.getHash())) {
+                snapshot = Snapshot.take(program);
+                try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    snapshot.write(out);
+                }
+            }
+            program.execute(Output.stdout(), snapshot);
+        }
+        else if(engine.equals("lazy")) {
+            Interpreter interpreter = new Interpreter(null);
+            interpreter.setArithmetic(arithmetic);
+            interpreter.setLazyFields(true);
+            interpreter.visit(source);
+        }
+        else if(engine.equals("watch")) {
+            Interpreter interpreter = new Interpreter(null);
+            interpreter.setArithmetic(arithmetic);
+            Program program = new Program(source);
+            Thread running = new Thread(() -> interpreter.execute(program));
+            File file = new File(fileName);
+            long modified = file.lastModified();
+            running.start();
+            while(running.isAlive()) {
+                try {
+                    running.join(500);
+                }
+                catch(InterruptedException e) {
+                    break;
+                }
+                if(file.lastModified() != modified) {
+                    modified = file.lastModified();
+                    try {
+                        interpreter.reload(new String(java.nio.file.Files.readAllBytes(file.toPath())));
+                        System.err.println("Reloaded " + fileName);
+                    }
+                    catch(RuntimeException e) {
+                        System.err.println("Not reloaded: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        else if(engine.equals("nodes")) {
+            NodeCompiler compiler = new NodeCompiler(null);
+            compiler.visit(source).execute();
+        }
+        else if(engine.equals("vm")) {
+            Bytecode.Program program = new BytecodeCompiler().compile(source);
+            new VirtualMachine(program).execute();
+        }
+        else if(engine.equals("jit")) {
+            new JvmCompiler(arithmetic).compile(source).execute();
+        }
+        else if(engine.equals("disassemble")) {
+            Bytecode.Program program = new BytecodeCompiler().compile(source);
+            System.out.println(Bytecode.disassemble(program));
+        }
+        else {
+            Interpreter interpreter = new Interpreter(null);
+            interpreter.setArithmetic(arithmetic);
+            interpreter.execute(new Program(source));
+        }
+
         PrintWriter writer = new PrintWriter(System.out);
-        Generator generator = new Generator(writer);
+        Instrumentation profile = args.length > 1 && !args[1].isEmpty() ? Instrumentation.read(new String(java.nio.file.Files.readAllBytes(new File(args[1]).toPath()))) : null;
+        Generator generator = new Generator(writer, 0, profile, args.length > 2 ? arithmetic : Arithmetic.DOUBLE);
         generator.visit(source);
 
         return;